@@ -0,0 +1,32 @@
+package works.weave.socks.orders.config;
+
+import org.springframework.aop.interceptor.AsyncUncaughtExceptionHandler;
+import org.springframework.aop.interceptor.SimpleAsyncUncaughtExceptionHandler;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.annotation.AsyncConfigurer;
+import works.weave.socks.orders.services.Bulkheads;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Runs {@code @Async} methods on the bounded default bulkhead instead of Spring's unbounded fallback executor.
+ */
+@Configuration
+public class AsyncConfiguration implements AsyncConfigurer {
+    @Lazy
+    @Autowired
+    private Bulkheads bulkheads;
+
+    @Override
+    public Executor getAsyncExecutor() {
+        // Resolved per task: this configurer is consulted before the bulkheads can be created.
+        return task -> bulkheads.defaultExecutor().execute(task);
+    }
+
+    @Override
+    public AsyncUncaughtExceptionHandler getAsyncUncaughtExceptionHandler() {
+        return new SimpleAsyncUncaughtExceptionHandler();
+    }
+}
@@ -0,0 +1,51 @@
+package works.weave.socks.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Sizes of the bounded executors that downstream calls run on, configured under {@code bulkhead.pools.<name>}. The
+ * {@code default} pool backs any remaining {@code @Async} methods.
+ */
+@ConfigurationProperties(prefix = "bulkhead")
+public class BulkheadConfigurationProperties {
+    public static final String DEFAULT_POOL = "default";
+
+    private Map<String, Pool> pools = new HashMap<>();
+
+    public Pool getPool(String name) {
+        Pool pool = pools.get(name);
+        return pool != null ? pool : new Pool();
+    }
+
+    public Map<String, Pool> getPools() {
+        return pools;
+    }
+
+    public void setPools(Map<String, Pool> pools) {
+        this.pools = pools;
+    }
+
+    public static class Pool {
+        private int coreSize = 20;
+        private int queueCapacity = 100;
+
+        public int getCoreSize() {
+            return coreSize;
+        }
+
+        public void setCoreSize(int coreSize) {
+            this.coreSize = coreSize;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package works.weave.socks.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Caching of downstream resources, configured per resource type under {@code cache.resources.<type>}, where the type
+ * is the first segment of the resource path: customers, addresses or cards.
+ */
+@ConfigurationProperties(prefix = "cache")
+public class CacheConfigurationProperties {
+    private Map<String, Policy> resources = new HashMap<>();
+
+    public Policy getPolicy(String type) {
+        Policy policy = resources.get(type);
+        return policy != null ? policy : new Policy();
+    }
+
+    public Map<String, Policy> getResources() {
+        return resources;
+    }
+
+    public void setResources(Map<String, Policy> resources) {
+        this.resources = resources;
+    }
+
+    public static class Policy {
+        private boolean enabled = true;
+        private long maxSize = 10000;
+        private long ttlSeconds = 60;
+        private long revalidateSeconds = 600;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public long getMaxSize() {
+            return maxSize;
+        }
+
+        public void setMaxSize(long maxSize) {
+            this.maxSize = maxSize;
+        }
+
+        /**
+         * How long an entry is served without asking the downstream.
+         */
+        public long getTtlSeconds() {
+            return ttlSeconds;
+        }
+
+        public void setTtlSeconds(long ttlSeconds) {
+            this.ttlSeconds = ttlSeconds;
+        }
+
+        /**
+         * How long after going stale an entry with an ETag is kept, to be revalidated with If-None-Match.
+         */
+        public long getRevalidateSeconds() {
+            return revalidateSeconds;
+        }
+
+        public void setRevalidateSeconds(long revalidateSeconds) {
+            this.revalidateSeconds = revalidateSeconds;
+        }
+    }
+}
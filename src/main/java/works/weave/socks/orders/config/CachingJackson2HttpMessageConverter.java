@@ -0,0 +1,152 @@
+package works.weave.socks.orders.config;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJacksonValue;
+import org.springframework.util.TypeUtils;
+
+import java.io.IOException;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A Jackson converter that resolves each payload type once and keeps the {@link ObjectReader} or {@link ObjectWriter}
+ * for it, instead of resolving the type and building a reader or writer on every message. Values wrapped in
+ * {@link MappingJacksonValue} for views or filters are left to the usual per-call writer.
+ * <p>
+ * Can be limited to one type and its subtypes, like Spring HATEOAS' type-constrained converter, to sit in front of
+ * more general converters.
+ */
+public class CachingJackson2HttpMessageConverter extends MappingJackson2HttpMessageConverter {
+    private final ConcurrentMap<Type, ObjectReader> readers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Class<?>, ObjectWriter> writers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<JavaType, ObjectWriter> typedWriters = new ConcurrentHashMap<>();
+    private final Class<?> supportedType;
+
+    public CachingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        this(objectMapper, null);
+    }
+
+    public CachingJackson2HttpMessageConverter(ObjectMapper objectMapper, Class<?> supportedType) {
+        super(objectMapper);
+        this.supportedType = supportedType;
+    }
+
+    /**
+     * A caching copy of the given converter, with the same mapper and media types, limited to the given type if any.
+     */
+    public static CachingJackson2HttpMessageConverter of(MappingJackson2HttpMessageConverter converter, Class<?>
+            supportedType) {
+        CachingJackson2HttpMessageConverter caching = new CachingJackson2HttpMessageConverter(converter
+                .getObjectMapper(), supportedType);
+        caching.setSupportedMediaTypes(converter.getSupportedMediaTypes());
+        return caching;
+    }
+
+    @Override
+    public void setObjectMapper(ObjectMapper objectMapper) {
+        super.setObjectMapper(objectMapper);
+        // The readers and writers belong to the old mapper; null if a superclass constructor calls this
+        if (readers != null) {
+            readers.clear();
+            writers.clear();
+            typedWriters.clear();
+        }
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return accepts(clazz) && super.canRead(clazz, mediaType);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return (supportedType == null || accepts(getJavaType(type, contextClass).getRawClass())) && super.canRead
+                (type, contextClass, mediaType);
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return accepts(clazz) && super.canWrite(clazz, mediaType);
+    }
+
+    @Override
+    public Object read(Type type, Class<?> contextClass, HttpInputMessage inputMessage) throws IOException {
+        return read(reader(type, contextClass), inputMessage);
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage) throws IOException {
+        return read(reader(clazz, null), inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object object, Type type, HttpOutputMessage outputMessage) throws IOException {
+        if (object instanceof MappingJacksonValue) {
+            super.writeInternal(object, type, outputMessage);
+            return;
+        }
+        ObjectWriter writer = writer(object, type);
+        JsonEncoding encoding = getJsonEncoding(outputMessage.getHeaders().getContentType());
+        JsonGenerator generator = objectMapper.getFactory().createGenerator(outputMessage.getBody(), encoding);
+        try {
+            writePrefix(generator, object);
+            writer.writeValue(generator, object);
+            writeSuffix(generator, object);
+            generator.flush();
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotWritableException("Could not write JSON: " + e.getOriginalMessage(), e);
+        }
+    }
+
+    private boolean accepts(Class<?> clazz) {
+        return supportedType == null || supportedType.isAssignableFrom(clazz);
+    }
+
+    private ObjectWriter writer(Object object, Type type) {
+        // As in the superclass, a declared container type such as List<BatchOrderResult> is written as declared, so
+        // the element type is not lost to erasure
+        if (type instanceof ParameterizedType && TypeUtils.isAssignable(type, object.getClass())) {
+            JavaType javaType = getJavaType(type, null);
+            if (javaType.isContainerType()) {
+                ObjectWriter writer = typedWriters.get(javaType);
+                return writer != null ? writer : typedWriters.computeIfAbsent(javaType, objectMapper::writerFor);
+            }
+        }
+        ObjectWriter writer = writers.get(object.getClass());
+        return writer != null ? writer : writers.computeIfAbsent(object.getClass(), objectMapper::writerFor);
+    }
+
+    private ObjectReader reader(Type type, Class<?> contextClass) {
+        // A type variable may resolve differently in each context class, so only plain types are cached
+        if (contextClass != null && !(type instanceof Class)) {
+            return objectMapper.readerFor(getJavaType(type, contextClass));
+        }
+        ObjectReader reader = readers.get(type);
+        if (reader == null) {
+            reader = readers.computeIfAbsent(type, t -> objectMapper.readerFor(getJavaType(t, null)));
+        }
+        return reader;
+    }
+
+    private static Object read(ObjectReader reader, HttpInputMessage inputMessage) throws IOException {
+        try {
+            return reader.readValue(inputMessage.getBody());
+        } catch (JsonProcessingException e) {
+            throw new HttpMessageNotReadableException("JSON parse error: " + e.getOriginalMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package works.weave.socks.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Circuit breakers on downstream calls, configured per downstream under {@code circuit-breaker.breakers.<name>}. Only
+ * payment and shipping have one unless configured otherwise.
+ */
+@ConfigurationProperties(prefix = "circuit-breaker")
+public class CircuitBreakerConfigurationProperties {
+    private static final List<String> ENABLED_BY_DEFAULT = Arrays.asList(Downstream.PAYMENT.getName(), Downstream
+            .SHIPPING.getName());
+
+    private Map<String, Breaker> breakers = new HashMap<>();
+
+    public Breaker getBreaker(String name) {
+        Breaker breaker = breakers.get(name);
+        if (breaker != null) {
+            return breaker;
+        }
+        breaker = new Breaker();
+        breaker.setEnabled(ENABLED_BY_DEFAULT.contains(name));
+        return breaker;
+    }
+
+    public Map<String, Breaker> getBreakers() {
+        return breakers;
+    }
+
+    public void setBreakers(Map<String, Breaker> breakers) {
+        this.breakers = breakers;
+    }
+
+    public static class Breaker {
+        private boolean enabled = true;
+        private int windowSize = 20;
+        private int minimumCalls = 10;
+        private int failureRateThreshold = 50;
+        private int slowCallDurationMillis = 2000;
+        private int slowCallRateThreshold = 80;
+        private int openSeconds = 10;
+        private int halfOpenCalls = 3;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        public int getMinimumCalls() {
+            return minimumCalls;
+        }
+
+        public void setMinimumCalls(int minimumCalls) {
+            this.minimumCalls = minimumCalls;
+        }
+
+        public int getFailureRateThreshold() {
+            return failureRateThreshold;
+        }
+
+        public void setFailureRateThreshold(int failureRateThreshold) {
+            this.failureRateThreshold = failureRateThreshold;
+        }
+
+        public int getSlowCallDurationMillis() {
+            return slowCallDurationMillis;
+        }
+
+        public void setSlowCallDurationMillis(int slowCallDurationMillis) {
+            this.slowCallDurationMillis = slowCallDurationMillis;
+        }
+
+        public int getSlowCallRateThreshold() {
+            return slowCallRateThreshold;
+        }
+
+        public void setSlowCallRateThreshold(int slowCallRateThreshold) {
+            this.slowCallRateThreshold = slowCallRateThreshold;
+        }
+
+        public int getOpenSeconds() {
+            return openSeconds;
+        }
+
+        public void setOpenSeconds(int openSeconds) {
+            this.openSeconds = openSeconds;
+        }
+
+        public int getHalfOpenCalls() {
+            return halfOpenCalls;
+        }
+
+        public void setHalfOpenCalls(int halfOpenCalls) {
+            this.halfOpenCalls = halfOpenCalls;
+        }
+    }
+}
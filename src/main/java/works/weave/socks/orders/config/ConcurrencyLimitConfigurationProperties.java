@@ -0,0 +1,139 @@
+package works.weave.socks.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Limits on how many requests are handled at once, configured per group under {@code concurrency-limit.limits.<name>}:
+ * {@code create} for placing orders, {@code read} for everything else under the API and {@code health} for the health
+ * check. The create and read limits adapt to latency between their minimum and maximum; the health limit is fixed.
+ */
+@ConfigurationProperties(prefix = "concurrency-limit")
+public class ConcurrencyLimitConfigurationProperties {
+    public static final String CREATE = "create";
+    public static final String READ = "read";
+    public static final String HEALTH = "health";
+
+    private Map<String, Limit> limits = new HashMap<>();
+
+    public Limit getLimit(String name) {
+        Limit limit = limits.get(name);
+        return limit != null ? limit : defaults(name);
+    }
+
+    private static Limit defaults(String name) {
+        Limit limit = new Limit();
+        if (READ.equals(name)) {
+            limit.setInitialLimit(50);
+            limit.setMinLimit(10);
+            limit.setMaxLimit(500);
+        } else if (HEALTH.equals(name)) {
+            limit.setAdaptive(false);
+            limit.setInitialLimit(10);
+        }
+        return limit;
+    }
+
+    public Map<String, Limit> getLimits() {
+        return limits;
+    }
+
+    public void setLimits(Map<String, Limit> limits) {
+        this.limits = limits;
+    }
+
+    public static class Limit {
+        private boolean enabled = true;
+        private boolean adaptive = true;
+        private int initialLimit = 20;
+        private int minLimit = 5;
+        private int maxLimit = 200;
+        private int windowSize = 20;
+        private double tolerance = 2.0;
+        private double smoothing = 0.2;
+        private double backoffRatio = 0.9;
+        private int retryAfterSeconds = 1;
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public boolean isAdaptive() {
+            return adaptive;
+        }
+
+        public void setAdaptive(boolean adaptive) {
+            this.adaptive = adaptive;
+        }
+
+        public int getInitialLimit() {
+            return initialLimit;
+        }
+
+        public void setInitialLimit(int initialLimit) {
+            this.initialLimit = initialLimit;
+        }
+
+        public int getMinLimit() {
+            return minLimit;
+        }
+
+        public void setMinLimit(int minLimit) {
+            this.minLimit = minLimit;
+        }
+
+        public int getMaxLimit() {
+            return maxLimit;
+        }
+
+        public void setMaxLimit(int maxLimit) {
+            this.maxLimit = maxLimit;
+        }
+
+        public int getWindowSize() {
+            return windowSize;
+        }
+
+        public void setWindowSize(int windowSize) {
+            this.windowSize = windowSize;
+        }
+
+        public double getTolerance() {
+            return tolerance;
+        }
+
+        public void setTolerance(double tolerance) {
+            this.tolerance = tolerance;
+        }
+
+        public double getSmoothing() {
+            return smoothing;
+        }
+
+        public void setSmoothing(double smoothing) {
+            this.smoothing = smoothing;
+        }
+
+        public double getBackoffRatio() {
+            return backoffRatio;
+        }
+
+        public void setBackoffRatio(double backoffRatio) {
+            this.backoffRatio = backoffRatio;
+        }
+
+        public int getRetryAfterSeconds() {
+            return retryAfterSeconds;
+        }
+
+        public void setRetryAfterSeconds(int retryAfterSeconds) {
+            this.retryAfterSeconds = retryAfterSeconds;
+        }
+    }
+}
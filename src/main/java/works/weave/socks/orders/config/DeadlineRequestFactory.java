@@ -0,0 +1,51 @@
+package works.weave.socks.orders.config;
+
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.protocol.HttpContext;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import works.weave.socks.orders.services.Deadline;
+
+import java.net.URI;
+
+/**
+ * Caps the timeouts of each request at the time left on the current {@link Deadline}, and aborts the request if the
+ * deadline is cancelled while it is in flight.
+ */
+class DeadlineRequestFactory extends HttpComponentsClientHttpRequestFactory {
+    private final RequestConfig defaults;
+
+    DeadlineRequestFactory(HttpClient httpClient, RequestConfig defaults) {
+        super(httpClient);
+        this.defaults = defaults;
+    }
+
+    @Override
+    protected HttpUriRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
+        HttpUriRequest request = super.createHttpUriRequest(httpMethod, uri);
+        Deadline deadline = Deadline.current();
+        if (deadline != null) {
+            deadline.onCancel(request::abort);
+        }
+        return request;
+    }
+
+    @Override
+    protected HttpContext createHttpContext(HttpMethod httpMethod, URI uri) {
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return null;
+        }
+        int remaining = (int) Math.max(1, Math.min(Integer.MAX_VALUE, deadline.remainingMillis()));
+        HttpClientContext context = HttpClientContext.create();
+        context.setRequestConfig(RequestConfig.copy(defaults)
+                .setConnectTimeout(Math.min(defaults.getConnectTimeout(), remaining))
+                .setConnectionRequestTimeout(Math.min(defaults.getConnectionRequestTimeout(), remaining))
+                .setSocketTimeout(Math.min(defaults.getSocketTimeout(), remaining))
+                .build());
+        return context;
+    }
+}
@@ -0,0 +1,53 @@
+package works.weave.socks.orders.config;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The services that orders calls out to. A URI is attributed to a downstream by the first segment of its path, which
+ * is stable across environments, falling back to its hostname.
+ */
+public enum Downstream {
+    USER("user", "customers", "addresses", "cards"),
+    CART("cart", "carts"),
+    PAYMENT("payment", "paymentAuth"),
+    SHIPPING("shipping", "shipping");
+
+    private final String name;
+    private final List<String> paths;
+
+    Downstream(String name, String... paths) {
+        this.name = name;
+        this.paths = Arrays.asList(paths);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static Downstream of(URI uri) {
+        String path = uri.getPath() == null ? "" : uri.getPath();
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.indexOf('/', start);
+        String segment = end < 0 ? path.substring(start) : path.substring(start, end);
+        for (Downstream downstream : values()) {
+            if (downstream.paths.contains(segment)) {
+                return downstream;
+            }
+        }
+        String host = uri.getHost() == null ? "" : uri.getHost();
+        for (Downstream downstream : values()) {
+            if (host.equals(downstream.name) || host.startsWith(downstream.name + ".") || host.startsWith(downstream
+                    .name + "s")) {
+                return downstream;
+            }
+        }
+        throw new IllegalArgumentException("No downstream service known for " + uri);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
@@ -0,0 +1,25 @@
+package works.weave.socks.orders.config;
+
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Map;
+
+/**
+ * Hands each request to the request factory, and therefore the connection pool, of the downstream it is addressed to.
+ */
+class DownstreamRequestFactory implements ClientHttpRequestFactory {
+    private final Map<Downstream, ? extends ClientHttpRequestFactory> factories;
+
+    DownstreamRequestFactory(Map<Downstream, ? extends ClientHttpRequestFactory> factories) {
+        this.factories = factories;
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) throws IOException {
+        return factories.get(Downstream.of(uri)).createRequest(uri, httpMethod);
+    }
+}
@@ -0,0 +1,121 @@
+package works.weave.socks.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.net.URI;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * What the background health prober checks and how often. Mongo is probed as {@code orders-db}; every other target
+ * is a downstream health endpoint, found by its {@code host} in the configured domain like the services themselves,
+ * unless given a {@code uri} of its own. The interval and timeout can be set per target under
+ * {@code health.probes.targets.<name>}.
+ */
+@ConfigurationProperties(prefix = "health.probes")
+public class HealthProbeConfigurationProperties {
+    public static final String DATABASE = "orders-db";
+
+    private long intervalMillis = 5000;
+    private long timeoutMillis = 1000;
+    private Map<String, Target> targets = new LinkedHashMap<>();
+
+    public HealthProbeConfigurationProperties() {
+        targets.put(DATABASE, new Target(null));
+        targets.put("user", new Target("user"));
+        targets.put("cart", new Target("carts"));
+        targets.put("payment", new Target("payment"));
+        targets.put("shipping", new Target("shipping"));
+    }
+
+    /**
+     * The health endpoint of a downstream target, or null if it has neither a URI nor a host.
+     */
+    public URI getUri(String target, OrdersConfigurationProperties ordersConfig) {
+        Target config = targets.get(target);
+        if (config.getUri() != null) {
+            return config.getUri();
+        }
+        return config.getHost() != null ? ordersConfig.getHealthUri(config.getHost()) : null;
+    }
+
+    public long getInterval(String target) {
+        Long override = targets.get(target).getIntervalMillis();
+        return override != null ? override : intervalMillis;
+    }
+
+    public long getTimeout(String target) {
+        Long override = targets.get(target).getTimeoutMillis();
+        return override != null ? override : timeoutMillis;
+    }
+
+    public long getIntervalMillis() {
+        return intervalMillis;
+    }
+
+    public void setIntervalMillis(long intervalMillis) {
+        this.intervalMillis = intervalMillis;
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    public Map<String, Target> getTargets() {
+        return targets;
+    }
+
+    public void setTargets(Map<String, Target> targets) {
+        this.targets = targets;
+    }
+
+    public static class Target {
+        private String host;
+        private URI uri;
+        private Long intervalMillis;
+        private Long timeoutMillis;
+
+        public Target() {
+        }
+
+        public Target(String host) {
+            this.host = host;
+        }
+
+        public String getHost() {
+            return host;
+        }
+
+        public void setHost(String host) {
+            this.host = host;
+        }
+
+        public URI getUri() {
+            return uri;
+        }
+
+        public void setUri(URI uri) {
+            this.uri = uri;
+        }
+
+        public Long getIntervalMillis() {
+            return intervalMillis;
+        }
+
+        public void setIntervalMillis(Long intervalMillis) {
+            this.intervalMillis = intervalMillis;
+        }
+
+        public Long getTimeoutMillis() {
+            return timeoutMillis;
+        }
+
+        public void setTimeoutMillis(Long timeoutMillis) {
+            this.timeoutMillis = timeoutMillis;
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package works.weave.socks.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Hedging of the idempotent GETs to downstream services, configured under {@code hedging}. A GET still unanswered
+ * after the given percentile of its downstream's recent latency is sent again, as long as hedges stay within
+ * {@code budget-percent} of all requests.
+ */
+@ConfigurationProperties(prefix = "hedging")
+public class HedgingConfigurationProperties {
+    private boolean enabled = false;
+    private double percentile = 95;
+    private int minDelayMillis = 5;
+    private int minSamples = 50;
+    private int windowSize = 1000;
+    private double budgetPercent = 5;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public double getPercentile() {
+        return percentile;
+    }
+
+    public void setPercentile(double percentile) {
+        this.percentile = percentile;
+    }
+
+    public int getMinDelayMillis() {
+        return minDelayMillis;
+    }
+
+    public void setMinDelayMillis(int minDelayMillis) {
+        this.minDelayMillis = minDelayMillis;
+    }
+
+    public int getMinSamples() {
+        return minSamples;
+    }
+
+    public void setMinSamples(int minSamples) {
+        this.minSamples = minSamples;
+    }
+
+    public int getWindowSize() {
+        return windowSize;
+    }
+
+    public void setWindowSize(int windowSize) {
+        this.windowSize = windowSize;
+    }
+
+    public double getBudgetPercent() {
+        return budgetPercent;
+    }
+
+    public void setBudgetPercent(double budgetPercent) {
+        this.budgetPercent = budgetPercent;
+    }
+}
@@ -0,0 +1,90 @@
+package works.weave.socks.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Connection pool and timeout settings for outbound HTTP calls. Each downstream gets its own pool, configured under
+ * {@code http.client.pools.<downstream>}, so that a slow service cannot exhaust the connections of the others.
+ */
+@ConfigurationProperties(prefix = "http.client")
+public class HttpClientConfigurationProperties {
+    private int connectTimeout = 1000;
+    private int readTimeout = 5000;
+    private int poolAcquireTimeout = 500;
+    private int idleEvictionSeconds = 30;
+    private Map<String, Pool> pools = new HashMap<>();
+
+    public Pool getPool(Downstream downstream) {
+        Pool pool = pools.get(downstream.getName());
+        return pool != null ? pool : new Pool();
+    }
+
+    public int getReadTimeout(Downstream downstream) {
+        Integer override = getPool(downstream).getReadTimeout();
+        return override != null ? override : readTimeout;
+    }
+
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public int getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(int readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public int getPoolAcquireTimeout() {
+        return poolAcquireTimeout;
+    }
+
+    public void setPoolAcquireTimeout(int poolAcquireTimeout) {
+        this.poolAcquireTimeout = poolAcquireTimeout;
+    }
+
+    public int getIdleEvictionSeconds() {
+        return idleEvictionSeconds;
+    }
+
+    public void setIdleEvictionSeconds(int idleEvictionSeconds) {
+        this.idleEvictionSeconds = idleEvictionSeconds;
+    }
+
+    public Map<String, Pool> getPools() {
+        return pools;
+    }
+
+    public void setPools(Map<String, Pool> pools) {
+        this.pools = pools;
+    }
+
+    public static class Pool {
+        private int maxConnections = 50;
+        private Integer readTimeout;
+
+        public int getMaxConnections() {
+            return maxConnections;
+        }
+
+        public void setMaxConnections(int maxConnections) {
+            this.maxConnections = maxConnections;
+        }
+
+        public Integer getReadTimeout() {
+            return readTimeout;
+        }
+
+        public void setReadTimeout(Integer readTimeout) {
+            this.readTimeout = readTimeout;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package works.weave.socks.orders.config;
+
+import io.prometheus.client.Histogram;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A connection pool that records how long each request waits to lease a connection from it.
+ */
+class InstrumentedConnectionManager extends PoolingHttpClientConnectionManager {
+    static final Histogram leaseLatency = Histogram.build()
+            .name("http_client_pool_lease_seconds")
+            .help("Time spent waiting for a pooled connection to a downstream service.")
+            .labelNames("downstream")
+            .buckets(0.0001, 0.0005, 0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1)
+            .register();
+
+    private final Histogram.Child leases;
+
+    InstrumentedConnectionManager(Downstream downstream) {
+        this.leases = leaseLatency.labels(downstream.getName());
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+        ConnectionRequest request = super.requestConnection(route, state);
+        return new ConnectionRequest() {
+            @Override
+            public HttpClientConnection get(long timeout, TimeUnit tunit) throws InterruptedException,
+                    ExecutionException, ConnectionPoolTimeoutException {
+                long start = System.nanoTime();
+                try {
+                    return request.get(timeout, tunit);
+                } finally {
+                    leases.observe((System.nanoTime() - start) / 1000000000.0);
+                }
+            }
+
+            @Override
+            public boolean cancel() {
+                return request.cancel();
+            }
+        };
+    }
+}
@@ -0,0 +1,71 @@
+package works.weave.socks.orders.config;
+
+import com.fasterxml.jackson.databind.Module;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.rest.webmvc.config.RepositoryRestConfigurer;
+import org.springframework.data.rest.webmvc.config.RepositoryRestConfigurerAdapter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import works.weave.socks.orders.entities.CustomerOrder;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+/**
+ * Serializes with generated bytecode rather than reflection, and with readers and writers cached per type, on both
+ * the MVC and the Spring Data REST side.
+ */
+@Configuration
+public class JacksonConfiguration {
+    /**
+     * Registered by Spring Boot with the ObjectMapper it configures.
+     */
+    @Bean
+    public Module afterburnerModule() {
+        return new AfterburnerModule();
+    }
+
+    /**
+     * Replaces Spring Boot's default Jackson converter.
+     */
+    @Bean
+    public MappingJackson2HttpMessageConverter mappingJackson2HttpMessageConverter(ObjectMapper objectMapper) {
+        return new CachingJackson2HttpMessageConverter(objectMapper);
+    }
+
+    @Bean
+    public RepositoryRestConfigurer jacksonRepositoryRestConfigurer(ObjectProvider<ObjectMapper> objectMapper) {
+        return new RepositoryRestConfigurerAdapter() {
+            @Override
+            public void configureJacksonObjectMapper(ObjectMapper repositoryObjectMapper) {
+                repositoryObjectMapper.registerModule(new AfterburnerModule());
+            }
+
+            /**
+             * Orders returned by the controller are plain JSON, so they are written ahead of the repository
+             * converters. Reading is left to those, which resolve the links in a request body. The mapper is looked up
+             * only now, as it may be the one this configurer helps to build.
+             */
+            @Override
+            public void configureHttpMessageConverters(List<HttpMessageConverter<?>> messageConverters) {
+                messageConverters.add(0, new CachingJackson2HttpMessageConverter(objectMapper.getObject(),
+                        CustomerOrder.class) {
+                    @Override
+                    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+                        return false;
+                    }
+
+                    @Override
+                    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+                        return false;
+                    }
+                });
+            }
+        };
+    }
+}
@@ -0,0 +1,94 @@
+package works.weave.socks.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Connection pool and timeout settings for the Mongo driver. A request waits for a connection while the pool is
+ * exhausted, at most {@code maxWaitTimeMillis}, and once {@code connectionsPerHost} times
+ * {@code threadsAllowedToBlockForConnectionMultiplier} requests are waiting the next fails at once. A value of 0 for
+ * an idle time, life time or socket timeout means no limit.
+ */
+@ConfigurationProperties(prefix = "mongodb.client")
+public class MongoClientConfigurationProperties {
+    private int connectionsPerHost = 100;
+    private int minConnectionsPerHost = 0;
+    private int threadsAllowedToBlockForConnectionMultiplier = 5;
+    private int maxWaitTimeMillis = 5000;
+    private int maxConnectionIdleTimeMillis = 0;
+    private int maxConnectionLifeTimeMillis = 0;
+    private int connectTimeoutMillis = 10000;
+    private int socketTimeoutMillis = 0;
+    private int serverSelectionTimeoutMillis = 10000;
+
+    public int getConnectionsPerHost() {
+        return connectionsPerHost;
+    }
+
+    public void setConnectionsPerHost(int connectionsPerHost) {
+        this.connectionsPerHost = connectionsPerHost;
+    }
+
+    public int getMinConnectionsPerHost() {
+        return minConnectionsPerHost;
+    }
+
+    public void setMinConnectionsPerHost(int minConnectionsPerHost) {
+        this.minConnectionsPerHost = minConnectionsPerHost;
+    }
+
+    public int getThreadsAllowedToBlockForConnectionMultiplier() {
+        return threadsAllowedToBlockForConnectionMultiplier;
+    }
+
+    public void setThreadsAllowedToBlockForConnectionMultiplier(int threadsAllowedToBlockForConnectionMultiplier) {
+        this.threadsAllowedToBlockForConnectionMultiplier = threadsAllowedToBlockForConnectionMultiplier;
+    }
+
+    public int getMaxWaitTimeMillis() {
+        return maxWaitTimeMillis;
+    }
+
+    public void setMaxWaitTimeMillis(int maxWaitTimeMillis) {
+        this.maxWaitTimeMillis = maxWaitTimeMillis;
+    }
+
+    public int getMaxConnectionIdleTimeMillis() {
+        return maxConnectionIdleTimeMillis;
+    }
+
+    public void setMaxConnectionIdleTimeMillis(int maxConnectionIdleTimeMillis) {
+        this.maxConnectionIdleTimeMillis = maxConnectionIdleTimeMillis;
+    }
+
+    public int getMaxConnectionLifeTimeMillis() {
+        return maxConnectionLifeTimeMillis;
+    }
+
+    public void setMaxConnectionLifeTimeMillis(int maxConnectionLifeTimeMillis) {
+        this.maxConnectionLifeTimeMillis = maxConnectionLifeTimeMillis;
+    }
+
+    public int getConnectTimeoutMillis() {
+        return connectTimeoutMillis;
+    }
+
+    public void setConnectTimeoutMillis(int connectTimeoutMillis) {
+        this.connectTimeoutMillis = connectTimeoutMillis;
+    }
+
+    public int getSocketTimeoutMillis() {
+        return socketTimeoutMillis;
+    }
+
+    public void setSocketTimeoutMillis(int socketTimeoutMillis) {
+        this.socketTimeoutMillis = socketTimeoutMillis;
+    }
+
+    public int getServerSelectionTimeoutMillis() {
+        return serverSelectionTimeoutMillis;
+    }
+
+    public void setServerSelectionTimeoutMillis(int serverSelectionTimeoutMillis) {
+        this.serverSelectionTimeoutMillis = serverSelectionTimeoutMillis;
+    }
+}
@@ -12,9 +12,19 @@ import com.mongodb.MongoClientOptions;
 public class MongoConfiguration {
 
     @Bean
-    public MongoClientOptions optionsProvider() {
+    public MongoClientOptions optionsProvider(MongoClientConfigurationProperties config) {
         MongoClientOptions.Builder optionsBuilder = new MongoClientOptions.Builder();
-        optionsBuilder.serverSelectionTimeout(10000);
+        optionsBuilder.serverSelectionTimeout(config.getServerSelectionTimeoutMillis());
+        optionsBuilder.connectionsPerHost(config.getConnectionsPerHost());
+        optionsBuilder.minConnectionsPerHost(config.getMinConnectionsPerHost());
+        optionsBuilder.threadsAllowedToBlockForConnectionMultiplier(config
+                .getThreadsAllowedToBlockForConnectionMultiplier());
+        optionsBuilder.maxWaitTime(config.getMaxWaitTimeMillis());
+        optionsBuilder.maxConnectionIdleTime(config.getMaxConnectionIdleTimeMillis());
+        optionsBuilder.maxConnectionLifeTime(config.getMaxConnectionLifeTimeMillis());
+        optionsBuilder.connectTimeout(config.getConnectTimeoutMillis());
+        optionsBuilder.socketTimeout(config.getSocketTimeoutMillis());
+        optionsBuilder.addConnectionPoolListener(new MongoConnectionPoolMetrics());
         MongoClientOptions options = optionsBuilder.build();
         return options;
     }
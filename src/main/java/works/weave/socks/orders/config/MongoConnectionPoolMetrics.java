@@ -0,0 +1,109 @@
+package works.weave.socks.orders.config;
+
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.ConnectionAddedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionPoolClosedEvent;
+import com.mongodb.event.ConnectionPoolListenerAdapter;
+import com.mongodb.event.ConnectionPoolOpenedEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueEnteredEvent;
+import com.mongodb.event.ConnectionPoolWaitQueueExitedEvent;
+import com.mongodb.event.ConnectionRemovedEvent;
+import io.prometheus.client.Gauge;
+import io.prometheus.client.Histogram;
+
+/**
+ * Exports the state of the driver's connection pool for each server. Every checkout passes through the wait queue,
+ * so the time from entering to leaving it is the time taken to acquire a connection, and both events arrive on the
+ * thread asking for the connection.
+ */
+class MongoConnectionPoolMetrics extends ConnectionPoolListenerAdapter {
+    static final Gauge maxSize = Gauge.build()
+            .name("mongodb_pool_max_connections")
+            .help("Most connections the pool to a Mongo server may open.")
+            .labelNames("server")
+            .register();
+
+    static final Gauge size = Gauge.build()
+            .name("mongodb_pool_connections")
+            .help("Connections open in the pool to a Mongo server.")
+            .labelNames("server")
+            .register();
+
+    static final Gauge checkedOut = Gauge.build()
+            .name("mongodb_pool_checked_out_connections")
+            .help("Connections to a Mongo server currently in use.")
+            .labelNames("server")
+            .register();
+
+    static final Gauge waitQueueSize = Gauge.build()
+            .name("mongodb_pool_wait_queue_size")
+            .help("Requests waiting for a connection to a Mongo server.")
+            .labelNames("server")
+            .register();
+
+    static final Histogram acquireLatency = Histogram.build()
+            .name("mongodb_pool_acquire_seconds")
+            .help("Time spent waiting for a pooled connection to a Mongo server.")
+            .labelNames("server")
+            .buckets(0.0001, 0.0005, 0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5)
+            .register();
+
+    private final ThreadLocal<Long> waitStart = new ThreadLocal<>();
+
+    @Override
+    public void connectionPoolOpened(ConnectionPoolOpenedEvent event) {
+        maxSize.labels(server(event.getServerId())).set(event.getSettings().getMaxSize());
+    }
+
+    @Override
+    public void connectionPoolClosed(ConnectionPoolClosedEvent event) {
+        String server = server(event.getServerId());
+        maxSize.labels(server).set(0);
+        size.labels(server).set(0);
+        checkedOut.labels(server).set(0);
+        waitQueueSize.labels(server).set(0);
+    }
+
+    @Override
+    public void connectionAdded(ConnectionAddedEvent event) {
+        size.labels(server(event.getConnectionId().getServerId())).inc();
+    }
+
+    @Override
+    public void connectionRemoved(ConnectionRemovedEvent event) {
+        size.labels(server(event.getConnectionId().getServerId())).dec();
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        checkedOut.labels(server(event.getConnectionId().getServerId())).inc();
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        checkedOut.labels(server(event.getConnectionId().getServerId())).dec();
+    }
+
+    @Override
+    public void waitQueueEntered(ConnectionPoolWaitQueueEnteredEvent event) {
+        waitQueueSize.labels(server(event.getServerId())).inc();
+        waitStart.set(System.nanoTime());
+    }
+
+    @Override
+    public void waitQueueExited(ConnectionPoolWaitQueueExitedEvent event) {
+        String server = server(event.getServerId());
+        waitQueueSize.labels(server).dec();
+        Long start = waitStart.get();
+        if (start != null) {
+            waitStart.remove();
+            acquireLatency.labels(server).observe((System.nanoTime() - start) / 1000000000.0);
+        }
+    }
+
+    private static String server(ServerId serverId) {
+        return serverId.getAddress().toString();
+    }
+}
@@ -11,4 +11,76 @@ public class OrdersConfiguration {
     public OrdersConfigurationProperties frameworkMesosConfigProperties() {
         return new OrdersConfigurationProperties();
     }
+
+    @Bean
+    @ConditionalOnMissingBean(HttpClientConfigurationProperties.class)
+    public HttpClientConfigurationProperties httpClientConfigurationProperties() {
+        return new HttpClientConfigurationProperties();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(BulkheadConfigurationProperties.class)
+    public BulkheadConfigurationProperties bulkheadConfigurationProperties() {
+        return new BulkheadConfigurationProperties();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(CacheConfigurationProperties.class)
+    public CacheConfigurationProperties cacheConfigurationProperties() {
+        return new CacheConfigurationProperties();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(CircuitBreakerConfigurationProperties.class)
+    public CircuitBreakerConfigurationProperties circuitBreakerConfigurationProperties() {
+        return new CircuitBreakerConfigurationProperties();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(WriteBehindConfigurationProperties.class)
+    public WriteBehindConfigurationProperties writeBehindConfigurationProperties() {
+        return new WriteBehindConfigurationProperties();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(OutboxConfigurationProperties.class)
+    public OutboxConfigurationProperties outboxConfigurationProperties() {
+        return new OutboxConfigurationProperties();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(HedgingConfigurationProperties.class)
+    public HedgingConfigurationProperties hedgingConfigurationProperties() {
+        return new HedgingConfigurationProperties();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(MongoClientConfigurationProperties.class)
+    public MongoClientConfigurationProperties mongoClientConfigurationProperties() {
+        return new MongoClientConfigurationProperties();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(HealthProbeConfigurationProperties.class)
+    public HealthProbeConfigurationProperties healthProbeConfigurationProperties() {
+        return new HealthProbeConfigurationProperties();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(ConcurrencyLimitConfigurationProperties.class)
+    public ConcurrencyLimitConfigurationProperties concurrencyLimitConfigurationProperties() {
+        return new ConcurrencyLimitConfigurationProperties();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(RateLimitConfigurationProperties.class)
+    public RateLimitConfigurationProperties rateLimitConfigurationProperties() {
+        return new RateLimitConfigurationProperties();
+    }
+
+    @Bean
+    @ConditionalOnMissingBean(TraceSamplingConfigurationProperties.class)
+    public TraceSamplingConfigurationProperties traceSamplingConfigurationProperties() {
+        return new TraceSamplingConfigurationProperties();
+    }
 }
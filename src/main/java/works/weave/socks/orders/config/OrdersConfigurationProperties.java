@@ -16,6 +16,13 @@ public class OrdersConfigurationProperties {
         return new ServiceUri(new Hostname("shipping"), new Domain(domain), "/shipping").toUri();
     }
 
+    /**
+     * The health endpoint of the service with the given hostname, in the same domain as the services called.
+     */
+    public URI getHealthUri(String hostname) {
+        return new ServiceUri(new Hostname(hostname), new Domain(domain), "/health").toUri();
+    }
+
     public void setDomain(String domain) {
         this.domain = domain;
     }
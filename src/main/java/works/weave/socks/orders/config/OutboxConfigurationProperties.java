@@ -0,0 +1,86 @@
+package works.weave.socks.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Dispatch of the shipping requests stored on new orders, configured under {@code orders.outbox}. A claimed request
+ * is leased for {@code lease-seconds}, after which another instance may claim it if it was not sent; a failed one is
+ * retried with exponential back-off until {@code max-attempts} is reached. Attempts turned away by the shipping
+ * circuit breaker or bulkhead are not counted. Requests that ran out of attempts are sent again after a
+ * {@code POST /outbox/shipments/redrive}, optionally for a single {@code orderId}.
+ */
+@ConfigurationProperties(prefix = "orders.outbox")
+public class OutboxConfigurationProperties {
+    private boolean enabled = true;
+    private long pollIntervalMillis = 500;
+    private int batchSize = 50;
+    private int leaseSeconds = 30;
+    private int timeoutSeconds = 5;
+    private int maxAttempts = 10;
+    private long retryBackoffMillis = 1000;
+    private long maxRetryBackoffMillis = 300000;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public long getPollIntervalMillis() {
+        return pollIntervalMillis;
+    }
+
+    public void setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getLeaseSeconds() {
+        return leaseSeconds;
+    }
+
+    public void setLeaseSeconds(int leaseSeconds) {
+        this.leaseSeconds = leaseSeconds;
+    }
+
+    public int getTimeoutSeconds() {
+        return timeoutSeconds;
+    }
+
+    public void setTimeoutSeconds(int timeoutSeconds) {
+        this.timeoutSeconds = timeoutSeconds;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getRetryBackoffMillis() {
+        return retryBackoffMillis;
+    }
+
+    public void setRetryBackoffMillis(long retryBackoffMillis) {
+        this.retryBackoffMillis = retryBackoffMillis;
+    }
+
+    public long getMaxRetryBackoffMillis() {
+        return maxRetryBackoffMillis;
+    }
+
+    public void setMaxRetryBackoffMillis(long maxRetryBackoffMillis) {
+        this.maxRetryBackoffMillis = maxRetryBackoffMillis;
+    }
+}
@@ -0,0 +1,155 @@
+package works.weave.socks.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Token-bucket rate limits, configured per endpoint under {@code rate-limit.endpoints.<name>}: {@code create} for
+ * placing orders, {@code search} for the order searches and {@code idempotency} for looking up the Idempotency-Key of
+ * an order, retries included. Each endpoint has one bucket per customer and one per client; a rate of 0 turns that
+ * bucket off. Settings given for an endpoint override its defaults one by one. Clients are told apart by their remote
+ * address. A request that comes through one of {@code trusted-proxies} is instead taken to be from the nearest
+ * {@code X-Forwarded-For} address that is not itself a trusted proxy; addresses further along the header are the
+ * client's own to make up. The per-client limit is off by default, since behind the front end every request would
+ * otherwise share a single bucket.
+ */
+@ConfigurationProperties(prefix = "rate-limit")
+public class RateLimitConfigurationProperties {
+    public static final String CREATE = "create";
+    public static final String SEARCH = "search";
+    public static final String IDEMPOTENCY = "idempotency";
+
+    private int maxKeys = 100000;
+    private long idleSeconds = 600;
+    private int retryAfterSeconds = 1;
+    private List<String> trustedProxies = new ArrayList<>();
+    private Map<String, Limit> endpoints = new HashMap<>();
+
+    public RateLimitConfigurationProperties() {
+        // Present up front, so that binding a single setting for an endpoint keeps the rest of its defaults
+        for (String name : new String[]{CREATE, SEARCH, IDEMPOTENCY}) {
+            endpoints.put(name, defaults(name));
+        }
+    }
+
+    public Limit getLimit(String name) {
+        Limit limit = endpoints.get(name);
+        return limit != null ? limit : defaults(name);
+    }
+
+    private static Limit defaults(String name) {
+        Limit limit = new Limit();
+        if (SEARCH.equals(name) || IDEMPOTENCY.equals(name)) {
+            limit.getCustomer().setRatePerSecond(5);
+            limit.getCustomer().setBurst(20);
+        }
+        return limit;
+    }
+
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    public void setMaxKeys(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    public long getIdleSeconds() {
+        return idleSeconds;
+    }
+
+    public void setIdleSeconds(long idleSeconds) {
+        this.idleSeconds = idleSeconds;
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    public void setRetryAfterSeconds(int retryAfterSeconds) {
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    public List<String> getTrustedProxies() {
+        return trustedProxies;
+    }
+
+    public void setTrustedProxies(List<String> trustedProxies) {
+        this.trustedProxies = trustedProxies;
+    }
+
+    public Map<String, Limit> getEndpoints() {
+        return endpoints;
+    }
+
+    public void setEndpoints(Map<String, Limit> endpoints) {
+        this.endpoints = endpoints;
+    }
+
+    public static class Limit {
+        private boolean enabled = true;
+        private Bucket customer = new Bucket(1, 10);
+        private Bucket client = new Bucket(0, 0);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public Bucket getCustomer() {
+            return customer;
+        }
+
+        public void setCustomer(Bucket customer) {
+            this.customer = customer;
+        }
+
+        public Bucket getClient() {
+            return client;
+        }
+
+        public void setClient(Bucket client) {
+            this.client = client;
+        }
+    }
+
+    public static class Bucket {
+        private double ratePerSecond;
+        private int burst;
+
+        public Bucket() {
+        }
+
+        public Bucket(double ratePerSecond, int burst) {
+            this.ratePerSecond = ratePerSecond;
+            this.burst = burst;
+        }
+
+        public boolean isEnabled() {
+            return ratePerSecond > 0;
+        }
+
+        public double getRatePerSecond() {
+            return ratePerSecond;
+        }
+
+        public void setRatePerSecond(double ratePerSecond) {
+            this.ratePerSecond = ratePerSecond;
+        }
+
+        public int getBurst() {
+            return burst;
+        }
+
+        public void setBurst(int burst) {
+            this.burst = burst;
+        }
+    }
+}
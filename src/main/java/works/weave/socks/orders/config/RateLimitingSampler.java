@@ -0,0 +1,43 @@
+package works.weave.socks.orders.config;
+
+import org.springframework.cloud.sleuth.Sampler;
+import org.springframework.cloud.sleuth.Span;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Samples up to a fixed number of traces each second, however many requests there are, so the cost of tracing stays
+ * flat as traffic grows while quiet periods are still traced in full.
+ */
+public class RateLimitingSampler implements Sampler {
+    private final int tracesPerSecond;
+    private final AtomicLong second = new AtomicLong();
+    private final AtomicInteger sampled = new AtomicInteger();
+
+    public RateLimitingSampler(int tracesPerSecond) {
+        this.tracesPerSecond = tracesPerSecond;
+    }
+
+    @Override
+    public boolean isSampled(Span span) {
+        return tryAcquire();
+    }
+
+    /**
+     * Takes one of this second's samples, returning false if they have all been taken.
+     */
+    public boolean tryAcquire() {
+        if (tracesPerSecond <= 0) {
+            return false;
+        }
+        long now = TimeUnit.NANOSECONDS.toSeconds(System.nanoTime());
+        long current = second.get();
+        // A sample or two may be lost to a race at the turn of the second; that is cheaper than a lock
+        if (now != current && second.compareAndSet(current, now)) {
+            sampled.set(0);
+        }
+        return sampled.incrementAndGet() <= tracesPerSecond;
+    }
+}
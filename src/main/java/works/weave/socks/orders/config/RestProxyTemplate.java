@@ -1,17 +1,33 @@
 package works.weave.socks.orders.config;
 
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.client.SimpleClientHttpRequestFactory;
+import org.springframework.hateoas.ResourceSupport;
+import org.springframework.hateoas.mvc.TypeConstrainedMappingJackson2HttpMessageConverter;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
 import org.springframework.stereotype.Component;
 import org.springframework.web.client.RestTemplate;
+import works.weave.socks.orders.middleware.DownstreamMetricsInterceptor;
 import org.springframework.context.annotation.Bean;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import javax.annotation.PostConstruct;
-import java.net.InetSocketAddress;
-import java.net.Proxy;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 @Component
 public final class RestProxyTemplate {
@@ -19,6 +35,11 @@ public final class RestProxyTemplate {
 
     @Autowired RestTemplate restTemplate;
 
+    @Autowired
+    private HttpClientConfigurationProperties clientConfig;
+
+    private final Map<Downstream, CloseableHttpClient> clients = new EnumMap<>(Downstream.class);
+
     @Bean
     public RestTemplate restTemplate() {
       return new RestTemplate();
@@ -32,21 +53,81 @@ public final class RestProxyTemplate {
 
     @PostConstruct
     public void init() {
-        if (host.isEmpty() || port.isEmpty()) {
-            return;
+        HttpHost proxy = null;
+        if (!host.isEmpty() && !port.isEmpty()) {
+            int portNr = -1;
+            try {
+                portNr = Integer.parseInt(port);
+            } catch (NumberFormatException e) {
+                logger.error("Unable to parse the proxy port number");
+            }
+            proxy = new HttpHost(host, portNr);
+        }
+
+        Map<Downstream, HttpComponentsClientHttpRequestFactory> factories = new EnumMap<>(Downstream.class);
+        for (Downstream downstream : Downstream.values()) {
+            RequestConfig requestConfig = requestConfig(downstream);
+            CloseableHttpClient client = pooledClient(downstream, requestConfig, proxy);
+            clients.put(downstream, client);
+            factories.put(downstream, new DeadlineRequestFactory(client, requestConfig));
+        }
+        restTemplate.setRequestFactory(new DownstreamRequestFactory(factories));
+        cacheJacksonConverters(restTemplate.getMessageConverters());
+        restTemplate.getInterceptors().add(new DownstreamMetricsInterceptor());
+    }
+
+    /**
+     * Swaps each Jackson converter, including the HAL one Spring HATEOAS adds, for one that keeps a reader per
+     * response type and serializes with generated bytecode.
+     */
+    private static void cacheJacksonConverters(List<HttpMessageConverter<?>> converters) {
+        for (int i = 0; i < converters.size(); i++) {
+            HttpMessageConverter<?> converter = converters.get(i);
+            if (converter instanceof MappingJackson2HttpMessageConverter && !(converter instanceof
+                    CachingJackson2HttpMessageConverter)) {
+                MappingJackson2HttpMessageConverter jackson = (MappingJackson2HttpMessageConverter) converter;
+                jackson.getObjectMapper().registerModule(new AfterburnerModule());
+                Class<?> supportedType = converter instanceof TypeConstrainedMappingJackson2HttpMessageConverter ?
+                        ResourceSupport.class : null;
+                converters.set(i, CachingJackson2HttpMessageConverter.of(jackson, supportedType));
+            }
         }
-        int portNr = -1;
-        try {
-            portNr = Integer.parseInt(port);
-        } catch (NumberFormatException e) {
-            logger.error("Unable to parse the proxy port number");
+    }
+
+    private RequestConfig requestConfig(Downstream downstream) {
+        return RequestConfig.custom()
+                .setConnectTimeout(clientConfig.getConnectTimeout())
+                .setSocketTimeout(clientConfig.getReadTimeout(downstream))
+                .setConnectionRequestTimeout(clientConfig.getPoolAcquireTimeout())
+                .build();
+    }
+
+    private CloseableHttpClient pooledClient(Downstream downstream, RequestConfig requestConfig, HttpHost proxy) {
+        int maxConnections = clientConfig.getPool(downstream).getMaxConnections();
+        PoolingHttpClientConnectionManager connectionManager = new InstrumentedConnectionManager(downstream);
+        connectionManager.setMaxTotal(maxConnections);
+        connectionManager.setDefaultMaxPerRoute(maxConnections);
+
+        HttpClientBuilder builder = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(requestConfig)
+                .evictExpiredConnections()
+                .evictIdleConnections((long) clientConfig.getIdleEvictionSeconds(), TimeUnit.SECONDS);
+        if (proxy != null) {
+            builder.setProxy(proxy);
         }
-        SimpleClientHttpRequestFactory factory = new SimpleClientHttpRequestFactory();
-        InetSocketAddress address = new InetSocketAddress(host, portNr);
-        Proxy proxy = new Proxy(Proxy.Type.HTTP, address);
-        factory.setProxy(proxy);
+        return builder.build();
+    }
 
-        restTemplate.setRequestFactory(factory);
+    @PreDestroy
+    public void close() {
+        for (CloseableHttpClient client : clients.values()) {
+            try {
+                client.close();
+            } catch (IOException e) {
+                logger.warn("Unable to close HTTP client", e);
+            }
+        }
     }
 
     public RestTemplate getRestTemplate() {
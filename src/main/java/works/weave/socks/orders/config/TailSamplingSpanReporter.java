@@ -0,0 +1,188 @@
+package works.weave.socks.orders.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.prometheus.client.Counter;
+import org.springframework.cloud.sleuth.zipkin.ZipkinSpanReporter;
+import zipkin.Annotation;
+import zipkin.BinaryAnnotation;
+import zipkin.Constants;
+import zipkin.Span;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds back each trace's spans until the request that started it here has been answered, then sends them all to
+ * Zipkin if the request was slow or failed, or if the trace is among the few let through each second, and drops them
+ * otherwise. A trace that is never answered, such as background work, is decided the same way once it has been idle
+ * for a while. Spans that arrive after their trace has been decided follow that decision. Only the spans reported by
+ * this service pass through here; those of downstream services are reported by them.
+ */
+public class TailSamplingSpanReporter implements ZipkinSpanReporter, Closeable {
+    static final Counter traces = Counter.build()
+            .name("tail_sampling_traces_total")
+            .help("Traces decided by the tail sampler, by result: slow, failed, sampled, dropped or overflow.")
+            .labelNames("result")
+            .register();
+
+    static final Counter droppedSpans = Counter.build()
+            .name("tail_sampling_dropped_spans_total")
+            .help("Spans dropped because their trace already held as many as may be buffered.")
+            .register();
+
+    private static final String CONTROLLER_METHOD = "mvc.controller.method";
+    private static final String STATUS_CODE = "http.status_code";
+
+    private final ZipkinSpanReporter delegate;
+    private final TraceSamplingConfigurationProperties config;
+    private final RateLimitingSampler baseline;
+    private final Cache<Long, Trace> buffered;
+    private final Cache<Long, Boolean> decisions;
+
+    public TailSamplingSpanReporter(ZipkinSpanReporter delegate, TraceSamplingConfigurationProperties config) {
+        this.delegate = delegate;
+        this.config = config;
+        this.baseline = new RateLimitingSampler(config.getTracesPerSecond());
+        this.buffered = Caffeine.newBuilder()
+                .maximumSize(config.getMaxTraces())
+                .expireAfterAccess(config.getIdleMillis(), TimeUnit.MILLISECONDS)
+                .<Long, Trace>removalListener((traceId, trace, cause) -> {
+                    if (cause.wasEvicted()) {
+                        evicted(traceId, trace, cause == RemovalCause.SIZE);
+                    }
+                })
+                .build();
+        this.decisions = Caffeine.newBuilder()
+                .maximumSize(config.getMaxTraces())
+                .expireAfterWrite(config.getIdleMillis(), TimeUnit.MILLISECONDS)
+                .build();
+    }
+
+    @Override
+    public void report(Span span) {
+        if (isServerSpan(span)) {
+            decide(span);
+            return;
+        }
+        Boolean decision = decisions.getIfPresent(span.traceId);
+        if (decision != null) {
+            if (decision) {
+                delegate.report(span);
+            }
+            return;
+        }
+        if (!buffered.get(span.traceId, traceId -> new Trace()).add(span, config.getMaxSpansPerTrace())) {
+            droppedSpans.inc();
+        }
+    }
+
+    private void decide(Span span) {
+        Boolean earlier = decisions.getIfPresent(span.traceId);
+        String result = result(span);
+        if (result == null) {
+            result = (earlier != null ? earlier : baseline.tryAcquire()) ? "sampled" : "dropped";
+        }
+        boolean keep = !result.equals("dropped");
+        // Recorded before the buffer is taken, so a span racing with this one is not buffered again and lost
+        decisions.put(span.traceId, keep);
+        Trace trace = buffered.asMap().remove(span.traceId);
+        traces.labels(result).inc();
+        if (keep) {
+            if (trace != null) {
+                trace.drain().forEach(delegate::report);
+            }
+            delegate.report(span);
+        }
+    }
+
+    private void evicted(long traceId, Trace trace, boolean overflow) {
+        Boolean decision = decisions.getIfPresent(traceId);
+        boolean keep = decision != null ? decision : !overflow && baseline.tryAcquire();
+        traces.labels(keep ? "sampled" : overflow ? "overflow" : "dropped").inc();
+        if (keep) {
+            trace.drain().forEach(delegate::report);
+        }
+    }
+
+    /**
+     * Why the trace of a request must be kept, or null if nothing stands out about it.
+     */
+    private String result(Span span) {
+        if (!config.getMethods().contains(tag(span, CONTROLLER_METHOD))) {
+            return null;
+        }
+        if (tag(span, Constants.ERROR) != null || isServerError(tag(span, STATUS_CODE))) {
+            return "failed";
+        }
+        long received = 0;
+        long sent = 0;
+        for (Annotation annotation : span.annotations) {
+            if (Constants.SERVER_RECV.equals(annotation.value)) {
+                received = annotation.timestamp;
+            } else if (Constants.SERVER_SEND.equals(annotation.value)) {
+                sent = annotation.timestamp;
+            }
+        }
+        if (received != 0 && TimeUnit.MICROSECONDS.toMillis(sent - received) >= config.getSlowThresholdMillis()) {
+            return "slow";
+        }
+        return null;
+    }
+
+    private static boolean isServerSpan(Span span) {
+        for (Annotation annotation : span.annotations) {
+            if (Constants.SERVER_SEND.equals(annotation.value)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isServerError(String status) {
+        try {
+            return status != null && Integer.parseInt(status) >= 500;
+        } catch (NumberFormatException e) {
+            return false;
+        }
+    }
+
+    private static String tag(Span span, String key) {
+        for (BinaryAnnotation annotation : span.binaryAnnotations) {
+            if (key.equals(annotation.key)) {
+                return new String(annotation.value, StandardCharsets.UTF_8);
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (delegate instanceof Closeable) {
+            ((Closeable) delegate).close();
+        }
+    }
+
+    private static class Trace {
+        private final List<Span> spans = new ArrayList<>();
+
+        synchronized boolean add(Span span, int maxSpans) {
+            if (spans.size() >= maxSpans) {
+                return false;
+            }
+            spans.add(span);
+            return true;
+        }
+
+        synchronized List<Span> drain() {
+            List<Span> drained = new ArrayList<>(spans);
+            spans.clear();
+            return drained;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package works.weave.socks.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Which requests are traced to Zipkin. In {@code rate} mode, the default, at most {@code traces-per-second} new
+ * traces are started, and the decision travels downstream with them. In {@code tail} mode every request is traced,
+ * but this service's own spans are held here until the request completes: they go to Zipkin if the request was to
+ * one of {@code methods} and was slow or failed, and otherwise only within the same rate. Tail mode filters local
+ * spans only. Every request still goes downstream marked as sampled, so downstream services report all of their
+ * spans, and kept traces are complete only as far as this service. Traces that never complete are dropped once idle,
+ * and the buffer is bounded in both the number of traces and the spans held per trace.
+ */
+@ConfigurationProperties(prefix = "tracing.sampling")
+public class TraceSamplingConfigurationProperties {
+    public static final String RATE = "rate";
+    public static final String TAIL = "tail";
+
+    private String mode = RATE;
+    private int tracesPerSecond = 10;
+    private List<String> methods = Arrays.asList("newOrder", "newOrders");
+    private long slowThresholdMillis = 1000;
+    private int maxTraces = 1000;
+    private int maxSpansPerTrace = 200;
+    private long idleMillis = 10000;
+
+    public boolean isTailSampling() {
+        return TAIL.equals(mode);
+    }
+
+    public String getMode() {
+        return mode;
+    }
+
+    public void setMode(String mode) {
+        this.mode = mode;
+    }
+
+    public int getTracesPerSecond() {
+        return tracesPerSecond;
+    }
+
+    public void setTracesPerSecond(int tracesPerSecond) {
+        this.tracesPerSecond = tracesPerSecond;
+    }
+
+    public List<String> getMethods() {
+        return methods;
+    }
+
+    public void setMethods(List<String> methods) {
+        this.methods = methods;
+    }
+
+    public long getSlowThresholdMillis() {
+        return slowThresholdMillis;
+    }
+
+    public void setSlowThresholdMillis(long slowThresholdMillis) {
+        this.slowThresholdMillis = slowThresholdMillis;
+    }
+
+    public int getMaxTraces() {
+        return maxTraces;
+    }
+
+    public void setMaxTraces(int maxTraces) {
+        this.maxTraces = maxTraces;
+    }
+
+    public int getMaxSpansPerTrace() {
+        return maxSpansPerTrace;
+    }
+
+    public void setMaxSpansPerTrace(int maxSpansPerTrace) {
+        this.maxSpansPerTrace = maxSpansPerTrace;
+    }
+
+    public long getIdleMillis() {
+        return idleMillis;
+    }
+
+    public void setIdleMillis(long idleMillis) {
+        this.idleMillis = idleMillis;
+    }
+}
@@ -0,0 +1,51 @@
+package works.weave.socks.orders.config;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cloud.sleuth.Sampler;
+import org.springframework.cloud.sleuth.sampler.AlwaysSampler;
+import org.springframework.cloud.sleuth.zipkin.ZipkinSpanReporter;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Decides which requests are traced when reporting to Zipkin is on, in place of Sleuth's fixed percentage.
+ */
+@Configuration
+@ConditionalOnProperty(value = "spring.zipkin.enabled", matchIfMissing = true)
+public class TracingConfiguration {
+    /**
+     * In tail mode every request is traced so that the spans of a slow one are there to keep; the reporter decides
+     * which of this service's spans are sent. The sampled flag still propagates, so downstream services trace every
+     * request too.
+     */
+    @Bean
+    public Sampler traceSampler(TraceSamplingConfigurationProperties config) {
+        return config.isTailSampling() ? new AlwaysSampler() : new RateLimitingSampler(config.getTracesPerSecond());
+    }
+
+    /**
+     * Puts the tail sampler in front of whichever Zipkin reporter Sleuth configures. The configuration is looked up
+     * only once that reporter is created, as post-processors are created before everything else.
+     */
+    @Bean
+    public static BeanPostProcessor tailSamplingPostProcessor(ObjectProvider<TraceSamplingConfigurationProperties>
+                                                                      config) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                return bean;
+            }
+
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof ZipkinSpanReporter && !(bean instanceof TailSamplingSpanReporter)
+                        && config.getObject().isTailSampling()) {
+                    return new TailSamplingSpanReporter((ZipkinSpanReporter) bean, config.getObject());
+                }
+                return bean;
+            }
+        };
+    }
+}
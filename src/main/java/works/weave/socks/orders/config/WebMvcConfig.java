@@ -3,7 +3,10 @@ package works.weave.socks.orders.config;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.web.servlet.handler.MappedInterceptor;
+import works.weave.socks.orders.middleware.ConcurrencyLimitInterceptor;
 import works.weave.socks.orders.middleware.HTTPMonitoringInterceptor;
+import works.weave.socks.orders.middleware.RateLimitInterceptor;
+import works.weave.socks.orders.services.RateLimiter;
 
 @Configuration
 public class WebMvcConfig {
@@ -16,4 +19,14 @@ public class WebMvcConfig {
     public MappedInterceptor myMappedInterceptor(HTTPMonitoringInterceptor interceptor) {
         return new MappedInterceptor(new String[]{"/**"}, interceptor);
     }
+
+    @Bean
+    public MappedInterceptor rateLimitInterceptor(RateLimiter rateLimiter, RateLimitConfigurationProperties config) {
+        return new MappedInterceptor(new String[]{"/orders/**"}, new RateLimitInterceptor(rateLimiter, config));
+    }
+
+    @Bean
+    public MappedInterceptor concurrencyLimitInterceptor(ConcurrencyLimitConfigurationProperties config) {
+        return new MappedInterceptor(new String[]{"/**"}, new ConcurrencyLimitInterceptor(config));
+    }
 }
@@ -0,0 +1,58 @@
+package works.weave.socks.orders.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Write-behind persistence of new orders, configured under {@code orders.write-behind}. When enabled, an order is
+ * acknowledged once it is durable in a local journal, and the journal is drained to Mongo in the background. The
+ * journal's {@code directory} has no default: it must be on storage that outlives the container, or acknowledged
+ * orders are lost with it.
+ */
+@ConfigurationProperties(prefix = "orders.write-behind")
+public class WriteBehindConfigurationProperties {
+    private boolean enabled = false;
+    private String directory;
+    private int segmentSizeMb = 64;
+    private int drainBatchSize = 500;
+    private long drainIntervalMillis = 100;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public int getSegmentSizeMb() {
+        return segmentSizeMb;
+    }
+
+    public void setSegmentSizeMb(int segmentSizeMb) {
+        this.segmentSizeMb = segmentSizeMb;
+    }
+
+    public int getDrainBatchSize() {
+        return drainBatchSize;
+    }
+
+    public void setDrainBatchSize(int drainBatchSize) {
+        this.drainBatchSize = drainBatchSize;
+    }
+
+    public long getDrainIntervalMillis() {
+        return drainIntervalMillis;
+    }
+
+    public void setDrainIntervalMillis(long drainIntervalMillis) {
+        this.drainIntervalMillis = drainIntervalMillis;
+    }
+}
@@ -1,39 +1,102 @@
 package works.weave.socks.orders.controllers;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import org.bson.types.ObjectId;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
 import org.springframework.data.rest.webmvc.RepositoryRestController;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.hateoas.Resource;
 import org.springframework.hateoas.mvc.TypeReferences;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 import works.weave.socks.orders.config.OrdersConfigurationProperties;
+import works.weave.socks.orders.config.RateLimitConfigurationProperties;
 import works.weave.socks.orders.entities.*;
+import works.weave.socks.orders.projections.OrderSummary;
 import works.weave.socks.orders.repositories.CustomerOrderRepository;
+import works.weave.socks.orders.resources.BatchOrderResult;
 import works.weave.socks.orders.resources.NewOrderResource;
+import works.weave.socks.orders.resources.OrderHistoryPage;
 import works.weave.socks.orders.services.AsyncGetService;
+import works.weave.socks.orders.services.Deadline;
+import works.weave.socks.orders.services.DeadlineExceededException;
+import works.weave.socks.orders.services.IdempotencyKeys;
+import works.weave.socks.orders.services.OrderPersister;
+import works.weave.socks.orders.services.RateLimitedException;
+import works.weave.socks.orders.services.RateLimiter;
 import works.weave.socks.orders.values.PaymentRequest;
 import works.weave.socks.orders.values.PaymentResponse;
 
+import javax.servlet.http.HttpServletResponse;
+import java.io.BufferedOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.Future;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
-import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
 
 
 @RepositoryRestController
 public class OrdersController {
+    private static final String NDJSON_VALUE = "application/x-ndjson";
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+    private static final ObjectWriter exportWriter = new ObjectMapper()
+            .registerModule(new AfterburnerModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+            .disable(SerializationFeature.FLUSH_AFTER_WRITE_VALUE)
+            .writerFor(CustomerOrder.class);
+
+    // Created once, so that every call hands the converters the same type to look up their readers by
+    private static final TypeReferences.ResourceType<Address> ADDRESS_TYPE = new TypeReferences
+            .ResourceType<Address>() {
+    };
+    private static final TypeReferences.ResourceType<Customer> CUSTOMER_TYPE = new TypeReferences
+            .ResourceType<Customer>() {
+    };
+    private static final TypeReferences.ResourceType<Card> CARD_TYPE = new TypeReferences.ResourceType<Card>() {
+    };
+    private static final ParameterizedTypeReference<List<Item>> ITEMS_TYPE = new
+            ParameterizedTypeReference<List<Item>>() {
+    };
+    private static final ParameterizedTypeReference<PaymentResponse> PAYMENT_RESPONSE_TYPE = new
+            ParameterizedTypeReference<PaymentResponse>() {
+    };
+
     private final Logger LOG = LoggerFactory.getLogger(getClass());
 
+    private final ProjectionFactory projectionFactory = new SpelAwareProxyProjectionFactory();
+
     @Autowired
     private OrdersConfigurationProperties config;
 
@@ -43,51 +106,271 @@ public class OrdersController {
     @Autowired
     private CustomerOrderRepository customerOrderRepository;
 
+    @Autowired
+    private OrderPersister orderPersister;
+
+    @Autowired
+    private IdempotencyKeys idempotencyKeys;
+
+    @Autowired
+    private RateLimiter rateLimiter;
+
     @Value(value = "${http.timeout:5}")
     private long timeout;
 
+    @Value(value = "${orders.history.max-page-size:100}")
+    private int maxPageSize;
+
+    @Value(value = "${orders.batch.max-size:100}")
+    private int maxBatchSize;
+
+    @Value(value = "${orders.batch.timeout:30}")
+    private long batchTimeout;
+
     @ResponseStatus(HttpStatus.CREATED)
     @RequestMapping(path = "/orders", consumes = MediaType.APPLICATION_JSON_VALUE, method = RequestMethod.POST)
     public
     @ResponseBody
-    CustomerOrder newOrder(@RequestBody NewOrderResource item) {
-        try {
+    DeferredResult<CustomerOrder> newOrder(@RequestBody NewOrderResource item,
+                                           @RequestHeader(value = "Idempotency-Key", required = false) String
+                                                   idempotencyKey) {
+        if (item.address == null || item.customer == null || item.card == null || item.items == null) {
+            throw new InvalidOrderException("Invalid order request. Order requires customer, address, card and items.");
+        }
+
+        Deadline deadline = Deadline.after(timeout, TimeUnit.SECONDS);
+        DeferredResult<CustomerOrder> result = new DeferredResult<>(TimeUnit.SECONDS.toMillis(timeout));
+        result.onTimeout(() -> {
+            deadline.cancel();
+            result.setErrorResult(timedOut());
+        });
+
+        // A retried request with the same key gets the original order back rather than paying and shipping again.
+        // Looking the key up is held to its own, looser limit; the order limit applies only to orders created
+        CompletableFuture<CustomerOrder> order;
+        if (idempotencyKey == null || idempotencyKey.isEmpty()) {
+            order = createOrderWithinRateLimit(item, deadline);
+        } else if (!rateLimiter.tryAcquireCustomer(RateLimitConfigurationProperties.IDEMPOTENCY, item.customer
+                .toString())) {
+            order = new CompletableFuture<>();
+            order.completeExceptionally(rateLimited());
+        } else {
+            order = idempotencyKeys.execute(item.customer.toString(), idempotencyKey, IdempotencyKeys.fingerprint(item
+                    .customer, item.address, item.card, item.items), () -> createOrderWithinRateLimit(item, deadline));
+        }
+        order.whenComplete((savedOrder, e) -> {
+            boolean expired = deadline.isExpired();
+            // Abort whatever is still in flight, e.g. the other lookups when one of them has failed
+            deadline.cancel();
+            if (e == null) {
+                result.setResult(savedOrder);
+            } else if (expired && !(unwrap(e) instanceof PaymentDeclinedException)) {
+                result.setErrorResult(timedOut());
+            } else {
+                result.setErrorResult(unwrap(e));
+            }
+        });
+        return result;
+    }
 
+    /**
+     * Creates several orders in one request. Customers, addresses and cards shared between orders are fetched once,
+     * every order proceeds independently of the others, and the orders that make it through are saved with a single
+     * bulk insert. The response holds one result per submitted order, in order.
+     */
+    @RequestMapping(path = "/orders/batch", consumes = MediaType.APPLICATION_JSON_VALUE, method = RequestMethod.POST)
+    public
+    @ResponseBody
+    DeferredResult<List<BatchOrderResult>> newOrders(@RequestBody List<NewOrderResource> items) {
+        if (items.size() > maxBatchSize) {
+            throw new InvalidOrderException("Invalid order request. A batch may hold at most " + maxBatchSize + " " +
+                    "orders.");
+        }
+
+        Deadline deadline = Deadline.after(batchTimeout, TimeUnit.SECONDS);
+        DeferredResult<List<BatchOrderResult>> result = new DeferredResult<>(TimeUnit.SECONDS.toMillis(batchTimeout));
+        result.onTimeout(() -> {
+            deadline.cancel();
+            result.setErrorResult(timedOut());
+        });
+
+        Map<URI, CompletableFuture<Resource<Address>>> addresses = new HashMap<>();
+        Map<URI, CompletableFuture<Resource<Customer>>> customers = new HashMap<>();
+        Map<URI, CompletableFuture<Resource<Card>>> cards = new HashMap<>();
+        List<CompletableFuture<CustomerOrder>> orders = new ArrayList<>();
+        for (NewOrderResource item : items) {
             if (item.address == null || item.customer == null || item.card == null || item.items == null) {
-                throw new InvalidOrderException("Invalid order request. Order requires customer, address, card and items.");
+                CompletableFuture<CustomerOrder> invalid = new CompletableFuture<>();
+                invalid.completeExceptionally(new InvalidOrderException("Invalid order request. Order requires " +
+                        "customer, address, card and items."));
+                orders.add(invalid);
+                continue;
+            }
+            if (overRateLimit(item)) {
+                CompletableFuture<CustomerOrder> throttled = new CompletableFuture<>();
+                throttled.completeExceptionally(rateLimited());
+                orders.add(throttled);
+                continue;
             }
+            orders.add(prepareOrder(
+                    addresses.computeIfAbsent(item.address, uri -> asyncGetService.getResource(uri, ADDRESS_TYPE,
+                            deadline)),
+                    customers.computeIfAbsent(item.customer, uri -> asyncGetService.getResource(uri, CUSTOMER_TYPE,
+                            deadline)),
+                    cards.computeIfAbsent(item.card, uri -> asyncGetService.getResource(uri, CARD_TYPE, deadline)),
+                    asyncGetService.getDataList(item.items, ITEMS_TYPE, deadline),
+                    deadline));
+        }
+
+        CompletableFuture.allOf(orders.toArray(new CompletableFuture<?>[orders.size()]))
+                .handle((ignored, e) -> orders)
+                .thenCompose(this::saveAll)
+                .whenComplete((results, e) -> {
+                    deadline.cancel();
+                    if (e == null) {
+                        result.setResult(results);
+                    } else {
+                        result.setErrorResult(unwrap(e));
+                    }
+                });
+        return result;
+    }
+
+    private CompletableFuture<List<BatchOrderResult>> saveAll(List<CompletableFuture<CustomerOrder>> orders) {
+        List<CustomerOrder> prepared = new ArrayList<>();
+        for (CompletableFuture<CustomerOrder> order : orders) {
+            if (!order.isCompletedExceptionally()) {
+                prepared.add(order.join());
+            }
+        }
+        return insertAll(prepared).thenApply(saved -> {
+            LOG.debug("Saved " + saved.size() + " of " + orders.size() + " orders");
+            return results(orders, saved);
+        });
+    }
+
+    /**
+     * Saves paid orders with one bulk insert, falling back to saving them one at a time if it fails, so that a
+     * failed insert costs each order its own result rather than the whole batch one error.
+     */
+    private CompletableFuture<Map<String, BatchOrderResult>> insertAll(List<CustomerOrder> prepared) {
+        if (prepared.isEmpty()) {
+            return CompletableFuture.completedFuture(Collections.<String, BatchOrderResult>emptyMap());
+        }
+        return attempt(() -> orderPersister.insert(prepared)).handle((saved, e) -> {
+            if (e == null) {
+                Map<String, BatchOrderResult> results = new HashMap<>();
+                for (CustomerOrder order : saved) {
+                    results.put(order.getId(), BatchOrderResult.created(order));
+                }
+                return CompletableFuture.completedFuture(results);
+            }
+            LOG.warn("Bulk insert of " + prepared.size() + " orders failed, saving them one at a time", unwrap(e));
+            return saveEach(prepared);
+        }).thenCompose(results -> results);
+    }
+
+    private CompletableFuture<Map<String, BatchOrderResult>> saveEach(List<CustomerOrder> prepared) {
+        Map<String, BatchOrderResult> results = new ConcurrentHashMap<>();
+        List<CompletableFuture<Void>> saves = new ArrayList<>();
+        for (CustomerOrder order : prepared) {
+            saves.add(attempt(() -> orderPersister.save(order)).handle((saved, e) -> {
+                results.put(order.getId(), e == null ? BatchOrderResult.created(saved) : failed(e));
+                return null;
+            }));
+        }
+        return CompletableFuture.allOf(saves.toArray(new CompletableFuture<?>[saves.size()])).thenApply(ignored ->
+                results);
+    }
+
+    private static <T> CompletableFuture<T> attempt(Supplier<CompletableFuture<T>> save) {
+        try {
+            return save.get();
+        } catch (RuntimeException e) {
+            CompletableFuture<T> failed = new CompletableFuture<>();
+            failed.completeExceptionally(e);
+            return failed;
+        }
+    }
 
+    private List<BatchOrderResult> results(List<CompletableFuture<CustomerOrder>> orders, Map<String,
+            BatchOrderResult> saved) {
+        List<BatchOrderResult> results = new ArrayList<>();
+        for (CompletableFuture<CustomerOrder> order : orders) {
+            if (order.isCompletedExceptionally()) {
+                results.add(failed(order.handle((savedOrder, error) -> error).join()));
+            } else {
+                BatchOrderResult result = saved.get(order.join().getId());
+                results.add(result != null ? result : BatchOrderResult.failed(HttpStatus.INTERNAL_SERVER_ERROR
+                        .value(), "Order was paid for but not saved."));
+            }
+        }
+        return results;
+    }
 
-            LOG.debug("Starting calls");
-            Future<Resource<Address>> addressFuture = asyncGetService.getResource(item.address, new TypeReferences
-                    .ResourceType<Address>() {
-            });
-            Future<Resource<Customer>> customerFuture = asyncGetService.getResource(item.customer, new TypeReferences
-                    .ResourceType<Customer>() {
-            });
-            Future<Resource<Card>> cardFuture = asyncGetService.getResource(item.card, new TypeReferences
-                    .ResourceType<Card>() {
-            });
-            Future<List<Item>> itemsFuture = asyncGetService.getDataList(item.items, new
-                    ParameterizedTypeReference<List<Item>>() {
-            });
-            LOG.debug("End of calls.");
-
-            float amount = calculateTotal(itemsFuture.get(timeout, TimeUnit.SECONDS));
-
-            // Call payment service to make sure they've paid
+    private BatchOrderResult failed(Throwable error) {
+        Throwable e = unwrap(error);
+        ResponseStatus status = AnnotationUtils.findAnnotation(e.getClass(), ResponseStatus.class);
+        return BatchOrderResult.failed(status != null ? status.value().value() : HttpStatus.INTERNAL_SERVER_ERROR
+                .value(), e.getMessage());
+    }
+
+    private CompletableFuture<CustomerOrder> createOrderWithinRateLimit(NewOrderResource item, Deadline deadline) {
+        if (overRateLimit(item)) {
+            CompletableFuture<CustomerOrder> throttled = new CompletableFuture<>();
+            throttled.completeExceptionally(rateLimited());
+            return throttled;
+        }
+        return createOrder(item, deadline);
+    }
+
+    private CompletableFuture<CustomerOrder> createOrder(NewOrderResource item, Deadline deadline) {
+        LOG.debug("Starting calls");
+        CompletableFuture<Resource<Address>> addressFuture = asyncGetService.getResource(item.address,
+                ADDRESS_TYPE, deadline);
+        CompletableFuture<Resource<Customer>> customerFuture = asyncGetService.getResource(item.customer,
+                CUSTOMER_TYPE, deadline);
+        CompletableFuture<Resource<Card>> cardFuture = asyncGetService.getResource(item.card, CARD_TYPE, deadline);
+        CompletableFuture<List<Item>> itemsFuture = asyncGetService.getDataList(item.items, ITEMS_TYPE, deadline);
+        LOG.debug("End of calls.");
+
+        // Once payment has gone through the order is saved even if the deadline has passed, so that it is not lost
+        // and charged again on a retry; only the response reports the timeout
+        return prepareOrder(addressFuture, customerFuture, cardFuture, itemsFuture, deadline).thenCompose(order ->
+                orderPersister.save(order)).thenApply(savedOrder -> {
+            LOG.debug("Saved order: " + savedOrder);
+            return savedOrder;
+        });
+    }
+
+    /**
+     * Builds the order as a graph of stages, each of which starts as soon as its own inputs are available. No
+     * stage blocks the calling thread; the returned future completes with the paid and not yet saved order, whose
+     * shipment is requested later by the {@link works.weave.socks.orders.services.ShipmentDispatcher}. Every
+     * downstream call is bounded by the time left on the deadline.
+     */
+    private CompletableFuture<CustomerOrder> prepareOrder(CompletableFuture<Resource<Address>> addressFuture,
+                                                          CompletableFuture<Resource<Customer>> customerFuture,
+                                                          CompletableFuture<Resource<Card>> cardFuture,
+                                                          CompletableFuture<List<Item>> itemsFuture,
+                                                          Deadline deadline) {
+        CompletableFuture<Float> amountFuture = itemsFuture.thenApply(this::calculateTotal);
+
+        // Call payment service to make sure they've paid
+        CompletableFuture<PaymentResponse> paymentFuture = CompletableFuture.allOf(addressFuture, cardFuture,
+                customerFuture, amountFuture).thenCompose(ignored -> {
             PaymentRequest paymentRequest = new PaymentRequest(
-                    addressFuture.get(timeout, TimeUnit.SECONDS).getContent(),
-                    cardFuture.get(timeout, TimeUnit.SECONDS).getContent(),
-                    customerFuture.get(timeout, TimeUnit.SECONDS).getContent(),
-                    amount);
+                    addressFuture.join().getContent(),
+                    cardFuture.join().getContent(),
+                    customerFuture.join().getContent(),
+                    amountFuture.join());
             LOG.info("Sending payment request: " + paymentRequest);
-            Future<PaymentResponse> paymentFuture = asyncGetService.postResource(
+            return asyncGetService.postResource(
                     config.getPaymentUri(),
                     paymentRequest,
-                    new ParameterizedTypeReference<PaymentResponse>() {
-                    });
-            PaymentResponse paymentResponse = paymentFuture.get(timeout, TimeUnit.SECONDS);
+                    PAYMENT_RESPONSE_TYPE,
+                    deadline);
+        }).thenApply(paymentResponse -> {
             LOG.info("Received payment response: " + paymentResponse);
             if (paymentResponse == null) {
                 throw new PaymentDeclinedException("Unable to parse authorisation packet");
@@ -95,34 +378,173 @@ public class OrdersController {
             if (!paymentResponse.isAuthorised()) {
                 throw new PaymentDeclinedException(paymentResponse.getMessage());
             }
+            return paymentResponse;
+        });
+
+        // Assemble the order while payment is still in flight, so only the shipment is outstanding once it clears
+        CompletableFuture<CustomerOrder> orderFuture = CompletableFuture.allOf(addressFuture, cardFuture,
+                customerFuture, itemsFuture, amountFuture).thenApply(ignored -> new CustomerOrder(
+                null,
+                parseId(customerFuture.join().getId().getHref()),
+                customerFuture.join().getContent(),
+                addressFuture.join().getContent(),
+                cardFuture.join().getContent(),
+                itemsFuture.join(),
+                null,
+                null,
+                amountFuture.join()));
 
-            // Ship
-            String customerId = parseId(customerFuture.get(timeout, TimeUnit.SECONDS).getId().getHref());
-            Future<Shipment> shipmentFuture = asyncGetService.postResource(config.getShippingUri(), new Shipment
-                    (customerId), new ParameterizedTypeReference<Shipment>() {
-            });
-
-            CustomerOrder order = new CustomerOrder(
-                    null,
-                    customerId,
-                    customerFuture.get(timeout, TimeUnit.SECONDS).getContent(),
-                    addressFuture.get(timeout, TimeUnit.SECONDS).getContent(),
-                    cardFuture.get(timeout, TimeUnit.SECONDS).getContent(),
-                    itemsFuture.get(timeout, TimeUnit.SECONDS),
-                    shipmentFuture.get(timeout, TimeUnit.SECONDS),
-                    Calendar.getInstance().getTime(),
-                    amount);
+        // Shipping is requested through the order's outbox entry, saved with it and dispatched afterwards
+        return paymentFuture.thenCombine(orderFuture, (paymentResponse, order) -> {
+            // Assigned here rather than by Mongo: the order id doubles as the shipment id the dispatcher will send,
+            // so the order carries its shipment from the start, and saving it again replaces it instead of adding
+            // a copy
+            order.setId(new ObjectId().toHexString());
+            order.setShipment(new Shipment(order.getId(), order.getCustomerId()));
+            order.setShipmentDispatch(new ShipmentDispatch());
+            order.setDate(Calendar.getInstance().getTime());
             LOG.debug("Received data: " + order.toString());
+            return order;
+        });
+    }
 
-            CustomerOrder savedOrder = customerOrderRepository.save(order);
-            LOG.debug("Saved order: " + savedOrder);
+    private boolean overRateLimit(NewOrderResource item) {
+        // The customer's URI identifies them as well as their ID does, without having to be parsed
+        return !rateLimiter.tryAcquireCustomer(RateLimitConfigurationProperties.CREATE, item.customer.toString());
+    }
 
-            return savedOrder;
-        } catch (TimeoutException e) {
-            throw new IllegalStateException("Unable to create order due to timeout from one of the services.", e);
-        } catch (InterruptedException | IOException | ExecutionException e) {
-            throw new IllegalStateException("Unable to create order due to unspecified IO error.", e);
+    private IllegalStateException rateLimited() {
+        return new RateLimitedException("Too many orders for this customer. Try again later.");
+    }
+
+    private IllegalStateException timedOut() {
+        return new DeadlineExceededException("Unable to create order due to timeout from one of the services.");
+    }
+
+    private Throwable unwrap(Throwable e) {
+        Throwable cause = e instanceof CompletionException && e.getCause() != null ? e.getCause() : e;
+        if (cause instanceof IllegalStateException) {
+            return cause;
+        }
+        return new IllegalStateException("Unable to create order due to unspecified IO error.", cause);
+    }
+
+    /**
+     * Summaries of a customer's orders, newest first, paged by a (date, id) cursor rather than an offset.
+     */
+    @RequestMapping(path = "/orders/search/history", method = RequestMethod.GET)
+    public
+    @ResponseBody
+    OrderHistoryPage<OrderSummary> history(@RequestParam("custId") String customerId,
+                                            @RequestParam(value = "after", required = false) String after,
+                                            @RequestParam(value = "size", defaultValue = "20") int size) {
+        int limit = Math.max(1, Math.min(size, maxPageSize));
+        Date afterDate = null;
+        String afterId = null;
+        if (after != null && !after.isEmpty()) {
+            String cursor = decodeCursor(after);
+            int separator = cursor.indexOf(':');
+            try {
+                afterDate = new Date(Long.parseLong(cursor.substring(0, separator)));
+                afterId = cursor.substring(separator + 1);
+            } catch (NumberFormatException | IndexOutOfBoundsException e) {
+                throw new InvalidCursorException("Invalid cursor: " + after);
+            }
+        }
+
+        // Fetch one extra order to find out whether there is another page
+        List<CustomerOrder> orders = customerOrderRepository.findPageByCustomerId(customerId, afterDate, afterId,
+                limit + 1);
+        String next = null;
+        if (orders.size() > limit) {
+            orders = orders.subList(0, limit);
+            CustomerOrder last = orders.get(limit - 1);
+            next = encodeCursor(last.getDate().getTime() + ":" + last.getId());
+        }
+        List<OrderSummary> summaries = new ArrayList<>(orders.size());
+        for (CustomerOrder order : orders) {
+            summaries.add(projectionFactory.createProjection(OrderSummary.class, order));
+        }
+        return new OrderHistoryPage<>(summaries, next);
+    }
+
+    private String encodeCursor(String cursor) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private String decodeCursor(String cursor) {
+        try {
+            return new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor);
+        }
+    }
+
+    /**
+     * Every order matching the filters as newline-delimited JSON, written straight from a Mongo cursor so that memory
+     * use does not grow with the export. The response is chunked, and gzipped when the client accepts it.
+     */
+    @RequestMapping(path = "/orders/export", method = RequestMethod.GET, produces = NDJSON_VALUE)
+    public void export(@RequestParam(value = "custId", required = false) String customerId,
+                       @RequestParam(value = "from", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO
+                               .DATE_TIME) Date from,
+                       @RequestParam(value = "to", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO
+                               .DATE_TIME) Date to,
+                       @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                       HttpServletResponse response) throws IOException {
+        boolean gzip = acceptsGzip(acceptEncoding);
+        response.setContentType(NDJSON_VALUE);
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        long count = 0;
+        try (CloseableIterator<CustomerOrder> orders = customerOrderRepository.streamOrders(customerId, from, to);
+             OutputStream out = gzip ? new GZIPOutputStream(response.getOutputStream(), EXPORT_BUFFER_SIZE) : new
+                     BufferedOutputStream(response.getOutputStream(), EXPORT_BUFFER_SIZE);
+             JsonGenerator generator = exportWriter.getFactory().createGenerator(out)) {
+            while (orders.hasNext()) {
+                exportWriter.writeValue(generator, orders.next());
+                generator.writeRaw('\n');
+                count++;
+            }
+        }
+        LOG.debug("Exported " + count + " orders");
+    }
+
+    /**
+     * Whether an Accept-Encoding header admits gzip: named as gzip or x-gzip, or else covered by *, with a q-value
+     * above zero. A coding named explicitly takes precedence over the wildcard.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+        Double gzip = null;
+        Double wildcard = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parameters = coding.split(";");
+            String name = parameters[0].trim().toLowerCase(Locale.ROOT);
+            double quality = 1;
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i].trim();
+                if (parameter.toLowerCase(Locale.ROOT).startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzip = gzip == null ? quality : Math.max(gzip, quality);
+            } else if (name.equals("*")) {
+                wildcard = quality;
+            }
         }
+        Double quality = gzip != null ? gzip : wildcard;
+        return quality != null && quality > 0;
     }
 
     private String parseId(String href) {
@@ -151,7 +573,7 @@ public class OrdersController {
 //        return ResponseEntity.ok(resources);
 //    }
 
-    private float calculateTotal(List<Item> items) {
+    float calculateTotal(List<Item> items) {
         float amount = 0F;
         float shipping = 4.99F;
         amount += items.stream().mapToDouble(i -> i.getQuantity() * i.getUnitPrice()).sum();
@@ -172,4 +594,11 @@ public class OrdersController {
             super(s);
         }
     }
+
+    @ResponseStatus(value = HttpStatus.BAD_REQUEST)
+    public class InvalidCursorException extends IllegalStateException {
+        public InvalidCursorException(String s) {
+            super(s);
+        }
+    }
 }
@@ -0,0 +1,27 @@
+package works.weave.socks.orders.controllers;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+import works.weave.socks.orders.services.ShipmentDispatcher;
+
+import java.util.Collections;
+import java.util.Map;
+
+@RestController
+public class ShipmentDispatchController {
+
+    @Autowired
+    private ShipmentDispatcher shipmentDispatcher;
+
+    /**
+     * Sends the shipping requests that ran out of attempts again, or just the one for the given order.
+     */
+    @ResponseStatus(HttpStatus.OK)
+    @RequestMapping(method = RequestMethod.POST, path = "/outbox/shipments/redrive")
+    public
+    @ResponseBody
+    Map<String, Long> redrive(@RequestParam(value = "orderId", required = false) String orderId) {
+        return Collections.singletonMap("redriven", shipmentDispatcher.redriveFailed(orderId));
+    }
+}
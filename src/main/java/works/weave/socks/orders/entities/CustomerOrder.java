@@ -1,7 +1,10 @@
 package works.weave.socks.orders.entities;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Calendar;
@@ -17,6 +20,11 @@ import java.util.List;
 
 @JsonIgnoreProperties(ignoreUnknown = true)
 @Document
+@CompoundIndexes({
+        @CompoundIndex(name = "customerId_date", def = "{'customerId': 1, 'date': -1, '_id': -1}"),
+        @CompoundIndex(name = "shipmentDispatch", def = "{'shipmentDispatch.status': 1, " +
+                "'shipmentDispatch.nextAttempt': 1}")
+})
 public class CustomerOrder {
 
     @Id
@@ -34,6 +42,9 @@ public class CustomerOrder {
 
     private Shipment shipment;
 
+    @JsonIgnore
+    private ShipmentDispatch shipmentDispatch;
+
     private Date date = Calendar.getInstance().getTime();
 
     private float total;
@@ -137,6 +148,14 @@ public class CustomerOrder {
         this.shipment = shipment;
     }
 
+    public ShipmentDispatch getShipmentDispatch() {
+        return shipmentDispatch;
+    }
+
+    public void setShipmentDispatch(ShipmentDispatch shipmentDispatch) {
+        this.shipmentDispatch = shipmentDispatch;
+    }
+
     public float getTotal() {
         return total;
     }
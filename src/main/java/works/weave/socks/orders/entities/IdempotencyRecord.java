@@ -0,0 +1,108 @@
+package works.weave.socks.orders.entities;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Calendar;
+import java.util.Date;
+
+/**
+ * Claims an Idempotency-Key for one customer and, once the order is placed, holds a copy of it, so that a retry
+ * arriving at any instance gets that order back without waiting for it to be saved. The fingerprint of the request
+ * that claimed the key tells a retry apart from a different order sent with the same key. Records expire a day after
+ * they are written.
+ */
+@Document
+public class IdempotencyRecord {
+    @Id
+    private String id;
+
+    private String customer;
+
+    private String key;
+
+    private String fingerprint;
+
+    private CustomerOrder order;
+
+    @Indexed(expireAfterSeconds = 86400)
+    private Date createdAt = Calendar.getInstance().getTime();
+
+    public IdempotencyRecord() {
+    }
+
+    public IdempotencyRecord(String customer, String key, String fingerprint) {
+        this.id = idFor(customer, key);
+        this.customer = customer;
+        this.key = key;
+        this.fingerprint = fingerprint;
+    }
+
+    /**
+     * The record id for a customer's key. Customers are identified by URI, which cannot contain a space.
+     */
+    public static String idFor(String customer, String key) {
+        return customer + " " + key;
+    }
+
+    @Override
+    public String toString() {
+        return "IdempotencyRecord{" +
+                "id='" + id + '\'' +
+                ", customer='" + customer + '\'' +
+                ", key='" + key + '\'' +
+                ", fingerprint='" + fingerprint + '\'' +
+                ", order=" + (order == null ? null : order.getId()) +
+                ", createdAt=" + createdAt +
+                '}';
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getCustomer() {
+        return customer;
+    }
+
+    public void setCustomer(String customer) {
+        this.customer = customer;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public void setKey(String key) {
+        this.key = key;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public CustomerOrder getOrder() {
+        return order;
+    }
+
+    public void setOrder(CustomerOrder order) {
+        this.order = order;
+    }
+
+    public Date getCreatedAt() {
+        return createdAt;
+    }
+
+    public void setCreatedAt(Date createdAt) {
+        this.createdAt = createdAt;
+    }
+}
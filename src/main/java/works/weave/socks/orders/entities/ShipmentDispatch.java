@@ -0,0 +1,77 @@
+package works.weave.socks.orders.entities;
+
+import java.util.Date;
+
+/**
+ * The outbox state of an order's shipping request. It is stored on the order itself, so the order and its request to
+ * ship are written together, and a dispatcher sends the request to the shipping service afterwards.
+ */
+public class ShipmentDispatch {
+    public static final String PENDING = "pending";
+    public static final String SHIPPED = "shipped";
+    public static final String FAILED = "failed";
+
+    private String status = PENDING;
+
+    private int attempts;
+
+    // When the request may next be claimed: after a back-off, or once a claim's lease has run out
+    private Date nextAttempt = new Date();
+
+    private String claim;
+
+    private String lastError;
+
+    public ShipmentDispatch() {
+    }
+
+    @Override
+    public String toString() {
+        return "ShipmentDispatch{" +
+                "status='" + status + '\'' +
+                ", attempts=" + attempts +
+                ", nextAttempt=" + nextAttempt +
+                ", lastError='" + lastError + '\'' +
+                '}';
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public int getAttempts() {
+        return attempts;
+    }
+
+    public void setAttempts(int attempts) {
+        this.attempts = attempts;
+    }
+
+    public Date getNextAttempt() {
+        return nextAttempt;
+    }
+
+    public void setNextAttempt(Date nextAttempt) {
+        this.nextAttempt = nextAttempt;
+    }
+
+    public String getClaim() {
+        return claim;
+    }
+
+    public void setClaim(String claim) {
+        this.claim = claim;
+    }
+
+    public String getLastError() {
+        return lastError;
+    }
+
+    public void setLastError(String lastError) {
+        this.lastError = lastError;
+    }
+}
@@ -0,0 +1,144 @@
+package works.weave.socks.orders.middleware;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.ModelAndView;
+import org.springframework.web.util.UrlPathHelper;
+import works.weave.socks.orders.config.ConcurrencyLimitConfigurationProperties;
+import works.weave.socks.orders.services.ConcurrencyLimiter;
+
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Holds each request to the concurrency limit of its group and answers those over it at once with 503 and a
+ * Retry-After header, before any work is done for them. An asynchronous request keeps its place until its response
+ * is complete, not just until its handler returns.
+ */
+public class ConcurrencyLimitInterceptor implements AsyncHandlerInterceptor {
+    private static final String PERMIT = ConcurrencyLimitInterceptor.class.getName() + ".permit";
+
+    private final ConcurrencyLimiter create;
+    private final ConcurrencyLimiter read;
+    private final ConcurrencyLimiter health;
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    public ConcurrencyLimitInterceptor(ConcurrencyLimitConfigurationProperties config) {
+        this.create = limiter(config, ConcurrencyLimitConfigurationProperties.CREATE);
+        this.read = limiter(config, ConcurrencyLimitConfigurationProperties.READ);
+        this.health = limiter(config, ConcurrencyLimitConfigurationProperties.HEALTH);
+    }
+
+    private static ConcurrencyLimiter limiter(ConcurrencyLimitConfigurationProperties config, String name) {
+        ConcurrencyLimitConfigurationProperties.Limit limit = config.getLimit(name);
+        return limit.isEnabled() ? new ConcurrencyLimiter(name, limit) : null;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws
+            Exception {
+        // Asynchronous and error dispatches belong to a request that was already admitted
+        if (request.getAttribute(PERMIT) != null) {
+            return true;
+        }
+        ConcurrencyLimiter limiter = limiterFor(request);
+        if (limiter == null) {
+            return true;
+        }
+        int inFlight = limiter.tryAcquire();
+        if (inFlight == 0) {
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, Integer.toString(limiter.getRetryAfterSeconds()));
+            return false;
+        }
+        request.setAttribute(PERMIT, new Permit(limiter, inFlight));
+        return true;
+    }
+
+    @Override
+    public void postHandle(HttpServletRequest request, HttpServletResponse response, Object handler, ModelAndView
+            modelAndView) throws Exception {
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(HttpServletRequest request, HttpServletResponse response, Object
+            handler) throws Exception {
+        Permit permit = (Permit) request.getAttribute(PERMIT);
+        if (permit != null) {
+            // Released by whichever comes first: this, or the end of the asynchronous dispatch
+            request.getAsyncContext().addListener(permit);
+        }
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler,
+                                Exception ex) throws Exception {
+        Permit permit = (Permit) request.getAttribute(PERMIT);
+        if (permit != null && !request.isAsyncStarted()) {
+            permit.release(ex == null ? response.getStatus() : HttpStatus.INTERNAL_SERVER_ERROR.value());
+        }
+    }
+
+    private ConcurrencyLimiter limiterFor(HttpServletRequest request) {
+        String path = urlPathHelper.getLookupPathForRequest(request);
+        if (path.equals("/error")) {
+            return null;
+        }
+        if (path.equals("/health")) {
+            return health;
+        }
+        if ("POST".equals(request.getMethod()) && path.startsWith("/orders")) {
+            return create;
+        }
+        return read;
+    }
+
+    private static class Permit implements AsyncListener {
+        private final ConcurrencyLimiter limiter;
+        private final int inFlight;
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(ConcurrencyLimiter limiter, int inFlight) {
+            this.limiter = limiter;
+            this.inFlight = inFlight;
+        }
+
+        private void release(int status) {
+            if (!released.compareAndSet(false, true)) {
+                return;
+            }
+            if (status >= 500) {
+                limiter.onDropped();
+            } else if (status >= 400) {
+                // Rejected before doing the work that the limit is there to protect
+                limiter.onIgnored();
+            } else {
+                limiter.onSuccess(System.nanoTime() - start, inFlight);
+            }
+        }
+
+        @Override
+        public void onComplete(AsyncEvent event) {
+            release(((HttpServletResponse) event.getSuppliedResponse()).getStatus());
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            release(HttpStatus.SERVICE_UNAVAILABLE.value());
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            release(HttpStatus.INTERNAL_SERVER_ERROR.value());
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package works.weave.socks.orders.middleware;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
+import org.apache.http.conn.ConnectTimeoutException;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import works.weave.socks.orders.config.Downstream;
+import works.weave.socks.orders.services.Deadline;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+
+/**
+ * Records the latency, response size and failures of every call to a downstream service, labelled by the downstream
+ * and by an operation made of the method and the first path segment, e.g. {@code GET /customers}.
+ */
+public class DownstreamMetricsInterceptor implements ClientHttpRequestInterceptor {
+    static final Histogram requestLatency = Histogram.build()
+            .name("http_client_request_duration_seconds")
+            .help("Time from sending a request to a downstream service to receiving its response headers.")
+            .labelNames("downstream", "operation", "status_code")
+            .register();
+
+    static final Histogram responseSize = Histogram.build()
+            .name("http_client_response_bytes")
+            .help("Size of the response bodies read from downstream services.")
+            .labelNames("downstream", "operation")
+            .buckets(128, 512, 1024, 4096, 16384, 65536, 262144, 1048576)
+            .register();
+
+    static final Counter errors = Counter.build()
+            .name("http_client_errors_total")
+            .help("Downstream calls that failed, by kind: server_error, client_error, connect or io.")
+            .labelNames("downstream", "operation", "error")
+            .register();
+
+    static final Counter timeouts = Counter.build()
+            .name("http_client_timeouts_total")
+            .help("Downstream calls that timed out, by phase: pool, connect, read or deadline.")
+            .labelNames("downstream", "operation", "phase")
+            .register();
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body, ClientHttpRequestExecution execution)
+            throws IOException {
+        String downstream = downstream(request.getURI());
+        String operation = request.getMethod() + " /" + firstSegment(request.getURI());
+        long start = System.nanoTime();
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException e) {
+            recordFailure(downstream, operation, e);
+            throw e;
+        }
+
+        int status = response.getRawStatusCode();
+        requestLatency.labels(downstream, operation, Integer.toString(status)).observe((System.nanoTime() - start) /
+                1000000000.0);
+        if (status >= 500) {
+            errors.labels(downstream, operation, "server_error").inc();
+        } else if (status >= 400) {
+            errors.labels(downstream, operation, "client_error").inc();
+        }
+        return new CountingResponse(response, responseSize.labels(downstream, operation));
+    }
+
+    private static void recordFailure(String downstream, String operation, IOException e) {
+        Deadline deadline = Deadline.current();
+        if (e instanceof ConnectionPoolTimeoutException) {
+            timeouts.labels(downstream, operation, "pool").inc();
+        } else if (e instanceof ConnectTimeoutException) {
+            timeouts.labels(downstream, operation, "connect").inc();
+        } else if (e instanceof SocketTimeoutException) {
+            timeouts.labels(downstream, operation, "read").inc();
+        } else if (deadline != null && deadline.isExpired()) {
+            // Aborted when the deadline passed or was cancelled
+            timeouts.labels(downstream, operation, "deadline").inc();
+        } else if (e instanceof ConnectException) {
+            errors.labels(downstream, operation, "connect").inc();
+        } else {
+            errors.labels(downstream, operation, "io").inc();
+        }
+    }
+
+    private static String downstream(URI uri) {
+        try {
+            return Downstream.of(uri).getName();
+        } catch (IllegalArgumentException e) {
+            return "unknown";
+        }
+    }
+
+    private static String firstSegment(URI uri) {
+        String path = uri.getPath() == null ? "" : uri.getPath();
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.indexOf('/', start);
+        return end < 0 ? path.substring(start) : path.substring(start, end);
+    }
+
+    /**
+     * Counts the body bytes the caller reads and records them when the response is closed.
+     */
+    private static class CountingResponse implements ClientHttpResponse {
+        private final ClientHttpResponse response;
+        private final Histogram.Child sizes;
+        private long bytes;
+        private InputStream body;
+
+        private CountingResponse(ClientHttpResponse response, Histogram.Child sizes) {
+            this.response = response;
+            this.sizes = sizes;
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new FilterInputStream(response.getBody()) {
+                    @Override
+                    public int read() throws IOException {
+                        int b = super.read();
+                        if (b >= 0) {
+                            bytes++;
+                        }
+                        return b;
+                    }
+
+                    @Override
+                    public int read(byte[] buffer, int offset, int length) throws IOException {
+                        int read = super.read(buffer, offset, length);
+                        if (read > 0) {
+                            bytes += read;
+                        }
+                        return read;
+                    }
+                };
+            }
+            return body;
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public HttpStatus getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        public int getRawStatusCode() throws IOException {
+            return response.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public void close() {
+            sizes.observe(bytes);
+            response.close();
+        }
+    }
+}
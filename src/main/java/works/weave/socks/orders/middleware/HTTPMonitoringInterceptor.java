@@ -4,21 +4,34 @@ import io.prometheus.client.Histogram;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationListener;
+import org.springframework.context.event.ContextRefreshedEvent;
 import org.springframework.data.rest.core.config.RepositoryRestConfiguration;
 import org.springframework.data.rest.core.mapping.ResourceMappings;
 import org.springframework.data.rest.webmvc.RepositoryRestHandlerMapping;
 import org.springframework.data.rest.webmvc.support.JpaHelper;
+import org.springframework.util.AntPathMatcher;
+import org.springframework.util.PathMatcher;
 import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
 import org.springframework.web.servlet.ModelAndView;
-import org.springframework.web.servlet.mvc.condition.PatternsRequestCondition;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
 import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
+import org.springframework.web.util.UrlPathHelper;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
-public class HTTPMonitoringInterceptor implements HandlerInterceptor {
+public class HTTPMonitoringInterceptor implements HandlerInterceptor, ApplicationListener<ContextRefreshedEvent> {
     static final Histogram requestLatency = Histogram.build()
             .name("http_request_duration_seconds")
             .help("Request duration in seconds.")
@@ -36,14 +49,44 @@ public class HTTPMonitoringInterceptor implements HandlerInterceptor {
     ApplicationContext applicationContext;
     @Autowired
     RequestMappingHandlerMapping requestMappingHandlerMapping;
-    private Set<PatternsRequestCondition> urlPatterns;
     @Value("${spring.application.name:orders}")
     private String serviceName;
 
+    private final PathMatcher pathMatcher = new AntPathMatcher();
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+    private final ConcurrentMap<LabelKey, Histogram.Child> children = new ConcurrentHashMap<>();
+    private volatile Routes routes = new Routes(Collections.<String>emptySet());
+
+    /**
+     * Collects the URL patterns of every controller and repository resource once the handler mappings are ready.
+     */
+    @Override
+    public void onApplicationEvent(ContextRefreshedEvent event) {
+        if (event.getApplicationContext() != applicationContext) {
+            return;
+        }
+        Set<String> patterns = new HashSet<>();
+        addPatterns(requestMappingHandlerMapping.getHandlerMethods(), patterns);
+        RepositoryRestHandlerMapping repositoryRestHandlerMapping = new
+                RepositoryRestHandlerMapping(mappings, repositoryConfiguration);
+        repositoryRestHandlerMapping.setJpaHelper(jpaHelper);
+        repositoryRestHandlerMapping.setApplicationContext(applicationContext);
+        repositoryRestHandlerMapping.afterPropertiesSet();
+        addPatterns(repositoryRestHandlerMapping.getHandlerMethods(), patterns);
+        routes = new Routes(patterns);
+    }
+
+    private static void addPatterns(Map<RequestMappingInfo, ?> handlerMethods, Set<String> patterns) {
+        handlerMethods.keySet().forEach(mapping -> patterns.addAll(mapping.getPatternsCondition().getPatterns()));
+    }
+
     @Override
     public boolean preHandle(HttpServletRequest httpServletRequest, HttpServletResponse
             httpServletResponse, Object o) throws Exception {
-        httpServletRequest.setAttribute(startTimeKey, System.nanoTime());
+        // Asynchronous requests are dispatched twice; time them from the original dispatch.
+        if (httpServletRequest.getAttribute(startTimeKey) == null) {
+            httpServletRequest.setAttribute(startTimeKey, System.nanoTime());
+        }
         return true;
     }
 
@@ -54,13 +97,8 @@ public class HTTPMonitoringInterceptor implements HandlerInterceptor {
         long elapsed = System.nanoTime() - start;
         double seconds = (double) elapsed / 1000000000.0;
         String matchedUrl = getMatchingURLPattern(httpServletRequest);
-        if (!matchedUrl.equals("")) {
-            requestLatency.labels(
-                    serviceName,
-                    httpServletRequest.getMethod(),
-                    matchedUrl,
-                    Integer.toString(httpServletResponse.getStatus())
-            ).observe(seconds);
+        if (matchedUrl != null) {
+            child(httpServletRequest.getMethod(), matchedUrl, httpServletResponse.getStatus()).observe(seconds);
         }
     }
 
@@ -69,31 +107,96 @@ public class HTTPMonitoringInterceptor implements HandlerInterceptor {
             httpServletResponse, Object o, Exception e) throws Exception {
     }
 
+    /**
+     * The route of the request: the pattern the handler mapping matched, when it is one of ours, or else the best of
+     * the known patterns that match the path. Null for the error page and for paths no route matches.
+     */
     private String getMatchingURLPattern(HttpServletRequest httpServletRequest) {
-        String res = "";
-        for (PatternsRequestCondition pattern : getUrlPatterns()) {
-            if (pattern.getMatchingCondition(httpServletRequest) != null &&
-                    !httpServletRequest.getServletPath().equals("/error")) {
-                res = pattern.getMatchingCondition(httpServletRequest).getPatterns().iterator().next();
-                break;
+        if (httpServletRequest.getServletPath().equals("/error")) {
+            return null;
+        }
+        Routes current = routes;
+        Object bestMatch = httpServletRequest.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (bestMatch instanceof String && current.contains((String) bestMatch)) {
+            return (String) bestMatch;
+        }
+        return current.match(urlPathHelper.getLookupPathForRequest(httpServletRequest), pathMatcher);
+    }
+
+    private Histogram.Child child(String method, String route, int status) {
+        LabelKey key = new LabelKey(method, route, status);
+        Histogram.Child child = children.get(key);
+        if (child == null) {
+            child = children.computeIfAbsent(key, k -> requestLatency.labels(serviceName, method, route, Integer
+                    .toString(status)));
+        }
+        return child;
+    }
+
+    private static class Routes {
+        private final Set<String> patterns;
+        private final Map<String, String> literal = new HashMap<>();
+        private final List<String> templated = new ArrayList<>();
+
+        private Routes(Set<String> patterns) {
+            this.patterns = patterns;
+            AntPathMatcher matcher = new AntPathMatcher();
+            for (String pattern : patterns) {
+                if (matcher.isPattern(pattern)) {
+                    templated.add(pattern);
+                } else {
+                    literal.put(pattern, pattern);
+                }
+            }
+        }
+
+        private boolean contains(String pattern) {
+            return patterns.contains(pattern);
+        }
+
+        private String match(String path, PathMatcher matcher) {
+            String route = literal.get(path);
+            if (route != null) {
+                return route;
             }
+            List<String> matches = new ArrayList<>();
+            for (String pattern : templated) {
+                if (matcher.match(pattern, path)) {
+                    matches.add(pattern);
+                }
+            }
+            if (matches.isEmpty()) {
+                return null;
+            }
+            matches.sort(matcher.getPatternComparator(path));
+            return matches.get(0);
         }
-        return res;
     }
 
-    private Set<PatternsRequestCondition> getUrlPatterns() {
-        if (this.urlPatterns == null) {
-            this.urlPatterns = new HashSet<>();
-            requestMappingHandlerMapping.getHandlerMethods().forEach((mapping, handlerMethod) ->
-                    urlPatterns.add(mapping.getPatternsCondition()));
-            RepositoryRestHandlerMapping repositoryRestHandlerMapping = new
-                    RepositoryRestHandlerMapping(mappings, repositoryConfiguration);
-            repositoryRestHandlerMapping.setJpaHelper(jpaHelper);
-            repositoryRestHandlerMapping.setApplicationContext(applicationContext);
-            repositoryRestHandlerMapping.afterPropertiesSet();
-            repositoryRestHandlerMapping.getHandlerMethods().forEach((mapping, handlerMethod) ->
-                    urlPatterns.add(mapping.getPatternsCondition()));
+    private static final class LabelKey {
+        private final String method;
+        private final String route;
+        private final int status;
+        private final int hash;
+
+        private LabelKey(String method, String route, int status) {
+            this.method = method;
+            this.route = route;
+            this.status = status;
+            this.hash = 31 * (31 * method.hashCode() + route.hashCode()) + status;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof LabelKey)) return false;
+            LabelKey other = (LabelKey) o;
+            return status == other.status && method.equals(other.method) && route.equals(other.route);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
         }
-        return this.urlPatterns;
     }
 }
@@ -0,0 +1,79 @@
+package works.weave.socks.orders.middleware;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.handler.HandlerInterceptorAdapter;
+import org.springframework.web.util.UrlPathHelper;
+import works.weave.socks.orders.config.RateLimitConfigurationProperties;
+import works.weave.socks.orders.services.RateLimiter;
+
+import javax.servlet.DispatcherType;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Answers requests over their client's rate limit, or for a search over the customer's, with 429 and a Retry-After
+ * header before anything is looked up for them. An order sent with an Idempotency-Key is also held to the client's
+ * limit for key lookups. The customer placing an order is only known once its body is read, so those limits are
+ * enforced by the controller instead.
+ */
+public class RateLimitInterceptor extends HandlerInterceptorAdapter {
+    private final RateLimiter rateLimiter;
+    private final Set<String> trustedProxies;
+    private final UrlPathHelper urlPathHelper = new UrlPathHelper();
+
+    public RateLimitInterceptor(RateLimiter rateLimiter, RateLimitConfigurationProperties config) {
+        this.rateLimiter = rateLimiter;
+        this.trustedProxies = new HashSet<>(config.getTrustedProxies());
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws
+            Exception {
+        // Asynchronous and error dispatches belong to a request that was already let through
+        if (request.getDispatcherType() != DispatcherType.REQUEST) {
+            return true;
+        }
+        String path = urlPathHelper.getLookupPathForRequest(request);
+        String endpoint;
+        String customerId = null;
+        if ("POST".equals(request.getMethod()) && path.startsWith("/orders")) {
+            endpoint = RateLimitConfigurationProperties.CREATE;
+        } else if ("GET".equals(request.getMethod()) && path.startsWith("/orders/search/")) {
+            endpoint = RateLimitConfigurationProperties.SEARCH;
+            customerId = request.getParameter("custId");
+        } else {
+            return true;
+        }
+        String client = client(request);
+        boolean keyed = RateLimitConfigurationProperties.CREATE.equals(endpoint)
+                && request.getHeader("Idempotency-Key") != null;
+        if (rateLimiter.tryAcquireClient(endpoint, client)
+                && rateLimiter.tryAcquireCustomer(endpoint, customerId)
+                && (!keyed || rateLimiter.tryAcquireClient(RateLimitConfigurationProperties.IDEMPOTENCY, client))) {
+            return true;
+        }
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setHeader(HttpHeaders.RETRY_AFTER, Integer.toString(rateLimiter.getRetryAfterSeconds()));
+        return false;
+    }
+
+    private String client(HttpServletRequest request) {
+        String address = request.getRemoteAddr();
+        String forwardedFor = request.getHeader("X-Forwarded-For");
+        if (forwardedFor == null || !trustedProxies.contains(address)) {
+            return address;
+        }
+        // Each proxy appends the address it was called from, so only the hops nearest us can be believed
+        String[] hops = forwardedFor.split(",");
+        for (int i = hops.length - 1; i >= 0; i--) {
+            String hop = hops[i].trim();
+            if (!hop.isEmpty() && !trustedProxies.contains(hop)) {
+                return hop;
+            }
+        }
+        return address;
+    }
+}
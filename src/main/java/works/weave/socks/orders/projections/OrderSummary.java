@@ -0,0 +1,39 @@
+package works.weave.socks.orders.projections;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.rest.core.config.Projection;
+import works.weave.socks.orders.entities.CustomerOrder;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * The few fields of an order that list and search views show. Orders loaded for a summary are read with only
+ * {@link #FIELD_NAMES}, leaving the embedded customer, address, card and item details in Mongo. {@link #FIELDS} is the
+ * same projection as JSON, for query annotations.
+ */
+@Projection(name = "summary", types = CustomerOrder.class)
+@JsonIgnoreProperties({"target", "targetClass", "decoratedClass"})
+public interface OrderSummary {
+    List<String> FIELD_NAMES = Collections.unmodifiableList(Arrays.asList("customerId", "date", "total", "items._id",
+            "shipment._id"));
+
+    String FIELDS = "{ 'customerId' : 1, 'date' : 1, 'total' : 1, 'items._id' : 1, 'shipment._id' : 1 }";
+
+    String getId();
+
+    String getCustomerId();
+
+    Date getDate();
+
+    float getTotal();
+
+    @Value("#{target.items == null ? 0 : target.items.size()}")
+    int getItemCount();
+
+    @Value("#{target.shipment?.id}")
+    String getShipmentId();
+}
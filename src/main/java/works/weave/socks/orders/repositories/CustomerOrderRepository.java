@@ -1,16 +1,19 @@
 package works.weave.socks.orders.repositories;
 
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import org.springframework.data.rest.core.annotation.RestResource;
 import works.weave.socks.orders.entities.CustomerOrder;
+import works.weave.socks.orders.projections.OrderSummary;
 
 import java.util.List;
 
-@RepositoryRestResource(path = "orders", itemResourceRel = "order")
-public interface CustomerOrderRepository extends MongoRepository<CustomerOrder, String> {
+@RepositoryRestResource(path = "orders", itemResourceRel = "order", excerptProjection = OrderSummary.class)
+public interface CustomerOrderRepository extends MongoRepository<CustomerOrder, String>, CustomerOrderRepositoryCustom {
     @RestResource(path = "customerId")
+    @Query(value = "{ 'customerId' : ?0 }", fields = OrderSummary.FIELDS)
     List<CustomerOrder> findByCustomerId(@Param("custId") String id);
 }
 
@@ -0,0 +1,30 @@
+package works.weave.socks.orders.repositories;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.util.CloseableIterator;
+import works.weave.socks.orders.entities.CustomerOrder;
+
+import java.util.Date;
+import java.util.List;
+
+public interface CustomerOrderRepositoryCustom {
+    /**
+     * A customer's orders, newest first, starting after the order identified by {@code afterDate} and {@code afterId}
+     * (both null for the first page). Paging by this keyset instead of an offset keeps every page an index range scan.
+     * Only the fields of an {@link works.weave.socks.orders.projections.OrderSummary} are loaded.
+     */
+    List<CustomerOrder> findPageByCustomerId(String customerId, Date afterDate, String afterId, int limit);
+
+    /**
+     * A page of orders with only the fields of an {@link works.weave.socks.orders.projections.OrderSummary} loaded,
+     * which is all the collection resource shows of them. Replaces the repository's own findAll for paging.
+     */
+    Page<CustomerOrder> findAll(Pageable pageable);
+
+    /**
+     * Orders placed from {@code from} (inclusive) to {@code to} (exclusive), optionally for one customer, read from a
+     * cursor as they are iterated. Any of the filters may be null. The iterator must be closed.
+     */
+    CloseableIterator<CustomerOrder> streamOrders(String customerId, Date from, Date to);
+}
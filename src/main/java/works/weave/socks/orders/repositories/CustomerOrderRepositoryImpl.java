@@ -0,0 +1,73 @@
+package works.weave.socks.orders.repositories;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import works.weave.socks.orders.entities.CustomerOrder;
+import works.weave.socks.orders.projections.OrderSummary;
+
+import java.util.Date;
+import java.util.List;
+
+class CustomerOrderRepositoryImpl implements CustomerOrderRepositoryCustom {
+    private final MongoOperations mongoOperations;
+
+    @Autowired
+    CustomerOrderRepositoryImpl(MongoOperations mongoOperations) {
+        this.mongoOperations = mongoOperations;
+    }
+
+    @Override
+    public List<CustomerOrder> findPageByCustomerId(String customerId, Date afterDate, String afterId, int limit) {
+        Criteria criteria = Criteria.where("customerId").is(customerId);
+        if (afterDate != null && afterId != null) {
+            Object id = ObjectId.isValid(afterId) ? new ObjectId(afterId) : afterId;
+            criteria = criteria.orOperator(
+                    Criteria.where("date").lt(afterDate),
+                    Criteria.where("date").is(afterDate).and("id").lt(id));
+        }
+        Query query = summaryQuery()
+                .addCriteria(criteria)
+                .with(new Sort(Sort.Direction.DESC, "date", "id"))
+                .limit(limit);
+        return mongoOperations.find(query, CustomerOrder.class);
+    }
+
+    @Override
+    public Page<CustomerOrder> findAll(Pageable pageable) {
+        List<CustomerOrder> orders = mongoOperations.find(summaryQuery().with(pageable), CustomerOrder.class);
+        return new PageImpl<>(orders, pageable, mongoOperations.count(new Query(), CustomerOrder.class));
+    }
+
+    @Override
+    public CloseableIterator<CustomerOrder> streamOrders(String customerId, Date from, Date to) {
+        Query query = new Query();
+        if (customerId != null) {
+            query.addCriteria(Criteria.where("customerId").is(customerId));
+        }
+        if (from != null || to != null) {
+            Criteria date = Criteria.where("date");
+            if (from != null) {
+                date = date.gte(from);
+            }
+            if (to != null) {
+                date = date.lt(to);
+            }
+            query.addCriteria(date);
+        }
+        return mongoOperations.stream(query, CustomerOrder.class);
+    }
+
+    private static Query summaryQuery() {
+        Query query = new Query();
+        OrderSummary.FIELD_NAMES.forEach(query.fields()::include);
+        return query;
+    }
+}
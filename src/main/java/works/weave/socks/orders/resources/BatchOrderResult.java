@@ -0,0 +1,41 @@
+package works.weave.socks.orders.resources;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import works.weave.socks.orders.entities.CustomerOrder;
+
+/**
+ * The outcome of one order in a batch: the HTTP status it would have had on its own, and either the saved order or
+ * the reason it failed.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BatchOrderResult {
+    private final int status;
+    private final CustomerOrder order;
+    private final String error;
+
+    private BatchOrderResult(int status, CustomerOrder order, String error) {
+        this.status = status;
+        this.order = order;
+        this.error = error;
+    }
+
+    public static BatchOrderResult created(CustomerOrder order) {
+        return new BatchOrderResult(201, order, null);
+    }
+
+    public static BatchOrderResult failed(int status, String error) {
+        return new BatchOrderResult(status, null, error);
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public CustomerOrder getOrder() {
+        return order;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
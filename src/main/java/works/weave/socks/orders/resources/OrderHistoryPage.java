@@ -0,0 +1,25 @@
+package works.weave.socks.orders.resources;
+
+import java.util.List;
+
+/**
+ * One page of a customer's order history. {@code next} is the cursor to pass as {@code after} for the following page,
+ * or null on the last page.
+ */
+public class OrderHistoryPage<T> {
+    private final List<T> orders;
+    private final String next;
+
+    public OrderHistoryPage(List<T> orders, String next) {
+        this.orders = orders;
+        this.next = next;
+    }
+
+    public List<T> getOrders() {
+        return orders;
+    }
+
+    public String getNext() {
+        return next;
+    }
+}
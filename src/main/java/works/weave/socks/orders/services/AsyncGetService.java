@@ -1,31 +1,23 @@
 package works.weave.socks.orders.services;
 
-import com.fasterxml.jackson.databind.DeserializationFeature;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.hateoas.MediaTypes;
 import org.springframework.hateoas.Resource;
 import org.springframework.hateoas.Resources;
-import org.springframework.hateoas.hal.Jackson2HalModule;
 import org.springframework.hateoas.mvc.TypeReferences;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.RequestEntity;
-import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
-import org.springframework.scheduling.annotation.Async;
-import org.springframework.scheduling.annotation.AsyncResult;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import works.weave.socks.orders.config.Downstream;
 import works.weave.socks.orders.config.RestProxyTemplate;
 
-import java.io.IOException;
 import java.net.URI;
-import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
-import java.util.concurrent.Future;
+import java.util.concurrent.CompletableFuture;
 
 import static org.springframework.hateoas.MediaTypes.HAL_JSON;
 
@@ -35,59 +27,92 @@ public class AsyncGetService {
 
     private final RestProxyTemplate restProxyTemplate;
 
-    private final RestTemplate halTemplate;
+    private final CircuitBreakers circuitBreakers;
+
+    private final ResourceCache resourceCache;
+
+    private final Hedging hedging;
+
+    private final SingleFlight<URI> resourceFlights = new SingleFlight<>();
 
     @Autowired
-    public AsyncGetService(RestProxyTemplate restProxyTemplate) {
+    public AsyncGetService(RestProxyTemplate restProxyTemplate, CircuitBreakers circuitBreakers,
+                           ResourceCache resourceCache, Hedging hedging) {
         this.restProxyTemplate = restProxyTemplate;
-        this.halTemplate = new RestTemplate(restProxyTemplate.getRestTemplate().getRequestFactory());
-
-        ObjectMapper objectMapper = new ObjectMapper();
-        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
-        objectMapper.registerModule(new Jackson2HalModule());
-        MappingJackson2HttpMessageConverter halConverter = new MappingJackson2HttpMessageConverter();
-        halConverter.setSupportedMediaTypes(Arrays.asList(MediaTypes.HAL_JSON));
-        halConverter.setObjectMapper(objectMapper);
-        halTemplate.setMessageConverters(Collections.singletonList(halConverter));
+        this.circuitBreakers = circuitBreakers;
+        this.resourceCache = resourceCache;
+        this.hedging = hedging;
     }
 
-    @Async
-    public <T> Future<Resource<T>> getResource(URI url, TypeReferences.ResourceType<T> type) throws
-            InterruptedException, IOException {
-        RequestEntity<Void> request = RequestEntity.get(url).accept(HAL_JSON).build();
-        LOG.debug("Requesting: " + request.toString());
-        Resource<T> body = restProxyTemplate.getRestTemplate().exchange(request, type).getBody();
-        LOG.debug("Received: " + body.toString());
-        return new AsyncResult<>(body);
+    /**
+     * Fetches a HAL resource, reading through the resource cache for the types it holds. A stale cached entry with an
+     * ETag is revalidated with If-None-Match rather than fetched again. Concurrent requests for the same URL share
+     * one downstream call; a URL always names a resource of the same type, so callers can share its result.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<Resource<T>> getResource(URI url, TypeReferences.ResourceType<T> type,
+                                                          Deadline deadline) {
+        ResourceCache.Entry cached = resourceCache.isCacheable(url) ? resourceCache.get(url) : null;
+        if (cached != null && cached.isFresh()) {
+            return CompletableFuture.completedFuture((Resource<T>) cached.getResource());
+        }
+        Downstream downstream = Downstream.of(url);
+        return resourceFlights.submit(url, downstream, deadline, shared -> hedging.submit(downstream, shared,
+                attempt -> circuitBreakers.submit(downstream, attempt, () -> {
+            RequestEntity.HeadersBuilder<?> builder = RequestEntity.get(url).accept(HAL_JSON);
+            if (cached != null && cached.getEtag() != null) {
+                builder.ifNoneMatch(cached.getEtag());
+            }
+            RequestEntity<Void> request = builder.build();
+            LOG.debug("Requesting: " + request.toString());
+            ResponseEntity<Resource<T>> response = restProxyTemplate.getRestTemplate().exchange(request, type);
+            if (cached != null && response.getStatusCode() == HttpStatus.NOT_MODIFIED) {
+                LOG.debug("Not modified: " + url);
+                resourceCache.revalidated(url, cached);
+                return (Resource<T>) cached.getResource();
+            }
+            Resource<T> body = response.getBody();
+            LOG.debug("Received: " + body.toString());
+            if (resourceCache.isCacheable(url)) {
+                resourceCache.put(url, body, response.getHeaders().getETag());
+            }
+            return body;
+        })));
     }
 
-    @Async
-    public <T> Future<Resources<T>> getDataList(URI url, TypeReferences.ResourcesType<T> type) throws
-            InterruptedException, IOException {
-        RequestEntity<Void> request = RequestEntity.get(url).accept(HAL_JSON).build();
-        LOG.debug("Requesting: " + request.toString());
-        Resources<T> body = restProxyTemplate.getRestTemplate().exchange(request, type).getBody();
-        LOG.debug("Received: " + body.toString());
-        return new AsyncResult<>(body);
+    public <T> CompletableFuture<Resources<T>> getDataList(URI url, TypeReferences.ResourcesType<T> type,
+                                                            Deadline deadline) {
+        Downstream downstream = Downstream.of(url);
+        return hedging.submit(downstream, deadline, attempt -> circuitBreakers.submit(downstream, attempt, () -> {
+            RequestEntity<Void> request = RequestEntity.get(url).accept(HAL_JSON).build();
+            LOG.debug("Requesting: " + request.toString());
+            Resources<T> body = restProxyTemplate.getRestTemplate().exchange(request, type).getBody();
+            LOG.debug("Received: " + body.toString());
+            return body;
+        }));
     }
 
-    @Async
-    public <T> Future<List<T>> getDataList(URI url, ParameterizedTypeReference<List<T>> type) throws
-            InterruptedException, IOException {
-        RequestEntity<Void> request = RequestEntity.get(url).accept(MediaType.APPLICATION_JSON).build();
-        LOG.debug("Requesting: " + request.toString());
-        List<T> body = restProxyTemplate.getRestTemplate().exchange(request, type).getBody();
-        LOG.debug("Received: " + body.toString());
-        return new AsyncResult<>(body);
+    public <T> CompletableFuture<List<T>> getDataList(URI url, ParameterizedTypeReference<List<T>> type,
+                                                       Deadline deadline) {
+        Downstream downstream = Downstream.of(url);
+        return hedging.submit(downstream, deadline, attempt -> circuitBreakers.submit(downstream, attempt, () -> {
+            RequestEntity<Void> request = RequestEntity.get(url).accept(MediaType.APPLICATION_JSON).build();
+            LOG.debug("Requesting: " + request.toString());
+            List<T> body = restProxyTemplate.getRestTemplate().exchange(request, type).getBody();
+            LOG.debug("Received: " + body.toString());
+            return body;
+        }));
     }
 
-    @Async
-    public <T, B> Future<T> postResource(URI uri, B body, ParameterizedTypeReference<T> returnType) {
-        RequestEntity<B> request = RequestEntity.post(uri).contentType(MediaType.APPLICATION_JSON).accept(MediaType
-                .APPLICATION_JSON).body(body);
-        LOG.debug("Requesting: " + request.toString());
-        T responseBody = restProxyTemplate.getRestTemplate().exchange(request, returnType).getBody();
-        LOG.debug("Received: " + responseBody);
-        return new AsyncResult<>(responseBody);
+    public <T, B> CompletableFuture<T> postResource(URI uri, B body, ParameterizedTypeReference<T> returnType,
+                                                    Deadline deadline) {
+        return circuitBreakers.submit(Downstream.of(uri), deadline, () -> {
+            RequestEntity<B> request = RequestEntity.post(uri).contentType(MediaType.APPLICATION_JSON).accept
+                    (MediaType.APPLICATION_JSON).body(body);
+            LOG.debug("Requesting: " + request.toString());
+            T responseBody = restProxyTemplate.getRestTemplate().exchange(request, returnType).getBody();
+            LOG.debug("Received: " + responseBody);
+            return responseBody;
+        });
     }
 }
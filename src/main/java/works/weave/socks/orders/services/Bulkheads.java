@@ -0,0 +1,133 @@
+package works.weave.socks.orders.services;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.Counter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import works.weave.socks.orders.config.BulkheadConfigurationProperties;
+import works.weave.socks.orders.config.Downstream;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * One bounded executor per downstream, so that a slow service can only tie up its own threads. A full executor
+ * rejects work immediately rather than queueing it without limit.
+ */
+@Component
+public class Bulkheads extends Collector {
+    static final Counter rejections = Counter.build()
+            .name("bulkhead_rejections_total")
+            .help("Tasks rejected because the bulkhead was full.")
+            .labelNames("bulkhead")
+            .register();
+
+    private final Map<Downstream, ThreadPoolExecutor> executors = new EnumMap<>(Downstream.class);
+    private final ThreadPoolExecutor defaultExecutor;
+
+    @Autowired
+    public Bulkheads(BulkheadConfigurationProperties config) {
+        for (Downstream downstream : Downstream.values()) {
+            executors.put(downstream, newExecutor(downstream.getName(), config.getPool(downstream.getName())));
+        }
+        this.defaultExecutor = newExecutor(BulkheadConfigurationProperties.DEFAULT_POOL, config.getPool
+                (BulkheadConfigurationProperties.DEFAULT_POOL));
+        register();
+    }
+
+    public Executor executor(Downstream downstream) {
+        return executors.get(downstream);
+    }
+
+    public Executor defaultExecutor() {
+        return defaultExecutor;
+    }
+
+    /**
+     * Runs the call on the downstream's executor under the given deadline; a call still queued when the deadline
+     * passes is never started. A rejection is reported through the returned future rather than thrown, so callers
+     * handle it like any other failed call.
+     */
+    public <T> CompletableFuture<T> submit(Downstream downstream, Deadline deadline, Supplier<T> call) {
+        try {
+            return CompletableFuture.supplyAsync(() -> deadline.call(call), executor(downstream));
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<MetricFamilySamples.Sample> queued = new ArrayList<>();
+        List<MetricFamilySamples.Sample> active = new ArrayList<>();
+        List<MetricFamilySamples.Sample> size = new ArrayList<>();
+        List<String> labelNames = Collections.singletonList("bulkhead");
+        for (Map.Entry<Downstream, ThreadPoolExecutor> entry : executors.entrySet()) {
+            addSamples(entry.getKey().getName(), entry.getValue(), labelNames, queued, active, size);
+        }
+        addSamples(BulkheadConfigurationProperties.DEFAULT_POOL, defaultExecutor, labelNames, queued, active, size);
+
+        List<MetricFamilySamples> samples = new ArrayList<>();
+        samples.add(new MetricFamilySamples("bulkhead_queue_depth", Type.GAUGE, "Tasks waiting for a bulkhead " +
+                "thread.", queued));
+        samples.add(new MetricFamilySamples("bulkhead_active_threads", Type.GAUGE, "Bulkhead threads running a " +
+                "task.", active));
+        samples.add(new MetricFamilySamples("bulkhead_pool_size", Type.GAUGE, "Threads in the bulkhead.", size));
+        return samples;
+    }
+
+    private void addSamples(String name, ThreadPoolExecutor executor, List<String> labelNames,
+                            List<MetricFamilySamples.Sample> queued, List<MetricFamilySamples.Sample> active,
+                            List<MetricFamilySamples.Sample> size) {
+        List<String> labelValues = Collections.singletonList(name);
+        queued.add(new MetricFamilySamples.Sample("bulkhead_queue_depth", labelNames, labelValues, executor
+                .getQueue().size()));
+        active.add(new MetricFamilySamples.Sample("bulkhead_active_threads", labelNames, labelValues, executor
+                .getActiveCount()));
+        size.add(new MetricFamilySamples.Sample("bulkhead_pool_size", labelNames, labelValues, executor.getPoolSize
+                ()));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.values().forEach(ThreadPoolExecutor::shutdown);
+        defaultExecutor.shutdown();
+    }
+
+    private static ThreadPoolExecutor newExecutor(String name, BulkheadConfigurationProperties.Pool pool) {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(pool.getCoreSize(), pool.getCoreSize(), 60L, TimeUnit
+                .SECONDS, new ArrayBlockingQueue<>(Math.max(1, pool.getQueueCapacity())), new
+                CustomizableThreadFactory("bulkhead-" + name + "-"), new FailFast(name));
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static class FailFast implements RejectedExecutionHandler {
+        private final String name;
+
+        private FailFast(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+            rejections.labels(name).inc();
+            throw new RejectedExecutionException("Bulkhead " + name + " is full");
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package works.weave.socks.orders.services;
+
+import io.prometheus.client.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import works.weave.socks.orders.config.CircuitBreakerConfigurationProperties;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tracks the outcome of the last calls to one downstream and stops calling it once too many of them failed or were
+ * slow. While open, calls are refused without being made. After a pause the breaker lets a few probe calls through:
+ * if all of them succeed in good time it closes again, otherwise it reopens.
+ */
+public class CircuitBreaker {
+    static final Counter transitions = Counter.build()
+            .name("circuit_breaker_transitions_total")
+            .help("Circuit breaker state changes.")
+            .labelNames("downstream", "from", "to")
+            .register();
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN;
+
+        public String label() {
+            return name().toLowerCase();
+        }
+    }
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    private final String name;
+    private final CircuitBreakerConfigurationProperties.Breaker config;
+    private final long slowCallNanos;
+    private final long openNanos;
+
+    // Outcomes of the last calls while closed: a ring of windowSize slots
+    private final boolean[] failed;
+    private final boolean[] slow;
+    private int next;
+    private int recorded;
+    private int failures;
+    private int slowCalls;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesLeft;
+    private int probesSucceeded;
+
+    public CircuitBreaker(String name, CircuitBreakerConfigurationProperties.Breaker config) {
+        this.name = name;
+        this.config = config;
+        this.slowCallNanos = TimeUnit.MILLISECONDS.toNanos(config.getSlowCallDurationMillis());
+        this.openNanos = TimeUnit.SECONDS.toNanos(config.getOpenSeconds());
+        this.failed = new boolean[Math.max(1, config.getWindowSize())];
+        this.slow = new boolean[failed.length];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getSlowCallNanos() {
+        return slowCallNanos;
+    }
+
+    /**
+     * Whether a call may go ahead now. A permitted call must be followed by exactly one of {@link #onSuccess},
+     * {@link #onFailure} or {@link #onIgnored}.
+     */
+    public synchronized boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.nanoTime() - openedAt < openNanos) {
+                return false;
+            }
+            transitionTo(State.HALF_OPEN);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesLeft == 0) {
+                return false;
+            }
+            probesLeft--;
+        }
+        return true;
+    }
+
+    public synchronized void onSuccess(long elapsedNanos) {
+        record(false, elapsedNanos >= slowCallNanos);
+    }
+
+    public synchronized void onFailure(long elapsedNanos) {
+        record(true, elapsedNanos >= slowCallNanos);
+    }
+
+    /**
+     * Hands back the permit of a call that was never made, or whose outcome says nothing about the downstream.
+     */
+    public synchronized void onIgnored() {
+        if (state == State.HALF_OPEN) {
+            probesLeft++;
+        }
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public synchronized double getFailureRate() {
+        return recorded == 0 ? 0 : (double) failures / recorded;
+    }
+
+    public synchronized double getSlowCallRate() {
+        return recorded == 0 ? 0 : (double) slowCalls / recorded;
+    }
+
+    private void record(boolean callFailed, boolean callSlow) {
+        if (state == State.OPEN) {
+            // A call that started before the breaker opened
+            return;
+        }
+        if (state == State.HALF_OPEN) {
+            if (callFailed || callSlow) {
+                transitionTo(State.OPEN);
+            } else if (++probesSucceeded >= config.getHalfOpenCalls()) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+
+        if (recorded == failed.length) {
+            failures -= failed[next] ? 1 : 0;
+            slowCalls -= slow[next] ? 1 : 0;
+        } else {
+            recorded++;
+        }
+        failed[next] = callFailed;
+        slow[next] = callSlow;
+        failures += callFailed ? 1 : 0;
+        slowCalls += callSlow ? 1 : 0;
+        next = (next + 1) % failed.length;
+
+        if (recorded >= config.getMinimumCalls() && (failures * 100 >= config.getFailureRateThreshold() * recorded
+                || slowCalls * 100 >= config.getSlowCallRateThreshold() * recorded)) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    private void transitionTo(State to) {
+        LOG.warn("Circuit breaker " + name + " " + state.label() + " -> " + to.label() + " (failures " + failures +
+                ", slow " + slowCalls + " of " + recorded + ")");
+        transitions.labels(name, state.label(), to.label()).inc();
+        state = to;
+        switch (to) {
+            case OPEN:
+                openedAt = System.nanoTime();
+                break;
+            case HALF_OPEN:
+                probesLeft = Math.max(1, config.getHalfOpenCalls());
+                probesSucceeded = 0;
+                break;
+            case CLOSED:
+                next = 0;
+                recorded = 0;
+                failures = 0;
+                slowCalls = 0;
+                break;
+        }
+    }
+}
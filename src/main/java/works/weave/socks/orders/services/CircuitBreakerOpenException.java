@@ -0,0 +1,11 @@
+package works.weave.socks.orders.services;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.SERVICE_UNAVAILABLE)
+public class CircuitBreakerOpenException extends IllegalStateException {
+    public CircuitBreakerOpenException(String s) {
+        super(s);
+    }
+}
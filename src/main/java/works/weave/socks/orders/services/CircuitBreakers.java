@@ -0,0 +1,128 @@
+package works.weave.socks.orders.services;
+
+import io.prometheus.client.Collector;
+import io.prometheus.client.Counter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.HttpClientErrorException;
+import works.weave.socks.orders.config.CircuitBreakerConfigurationProperties;
+import works.weave.socks.orders.config.Downstream;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Puts a {@link CircuitBreaker} in front of the bulkhead of each downstream that has one configured. A call to an open
+ * breaker fails at once with {@link CircuitBreakerOpenException} instead of taking a thread until it times out.
+ */
+@Component
+public class CircuitBreakers extends Collector {
+    static final Counter rejections = Counter.build()
+            .name("circuit_breaker_rejections_total")
+            .help("Calls refused because the circuit breaker was open.")
+            .labelNames("downstream")
+            .register();
+
+    private final Map<Downstream, CircuitBreaker> breakers = new EnumMap<>(Downstream.class);
+    private final Bulkheads bulkheads;
+
+    @Autowired
+    public CircuitBreakers(CircuitBreakerConfigurationProperties config, Bulkheads bulkheads) {
+        this.bulkheads = bulkheads;
+        for (Downstream downstream : Downstream.values()) {
+            CircuitBreakerConfigurationProperties.Breaker breaker = config.getBreaker(downstream.getName());
+            if (breaker.isEnabled()) {
+                breakers.put(downstream, new CircuitBreaker(downstream.getName(), breaker));
+            }
+        }
+        register();
+    }
+
+    public CircuitBreaker breaker(Downstream downstream) {
+        return breakers.get(downstream);
+    }
+
+    /**
+     * Runs the call on the downstream's bulkhead if its breaker allows it. A client error still counts as a success,
+     * since the downstream answered; a call aborted early because its deadline was cancelled does not count at all.
+     */
+    public <T> CompletableFuture<T> submit(Downstream downstream, Deadline deadline, Supplier<T> call) {
+        CircuitBreaker breaker = breakers.get(downstream);
+        if (breaker == null) {
+            return bulkheads.submit(downstream, deadline, call);
+        }
+        if (!breaker.tryAcquire()) {
+            rejections.labels(downstream.getName()).inc();
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new CircuitBreakerOpenException("Circuit breaker for " + downstream +
+                    " is open"));
+            return rejected;
+        }
+
+        AtomicBoolean started = new AtomicBoolean();
+        CompletableFuture<T> result = bulkheads.submit(downstream, deadline, () -> {
+            started.set(true);
+            long start = System.nanoTime();
+            try {
+                T response = call.get();
+                breaker.onSuccess(System.nanoTime() - start);
+                return response;
+            } catch (HttpClientErrorException e) {
+                breaker.onSuccess(System.nanoTime() - start);
+                throw e;
+            } catch (RuntimeException e) {
+                long elapsed = System.nanoTime() - start;
+                if (deadline.isExpired() && elapsed < breaker.getSlowCallNanos()) {
+                    breaker.onIgnored();
+                } else {
+                    breaker.onFailure(elapsed);
+                }
+                throw e;
+            }
+        });
+        result.whenComplete((response, e) -> {
+            if (!started.get()) {
+                // Rejected by the bulkhead, or its deadline passed while it was queued
+                breaker.onIgnored();
+            }
+        });
+        return result;
+    }
+
+    @Override
+    public List<MetricFamilySamples> collect() {
+        List<MetricFamilySamples.Sample> states = new ArrayList<>();
+        List<MetricFamilySamples.Sample> failureRates = new ArrayList<>();
+        List<MetricFamilySamples.Sample> slowCallRates = new ArrayList<>();
+        List<String> stateLabelNames = Arrays.asList("downstream", "state");
+        List<String> labelNames = Collections.singletonList("downstream");
+        for (CircuitBreaker breaker : breakers.values()) {
+            CircuitBreaker.State current = breaker.getState();
+            for (CircuitBreaker.State state : CircuitBreaker.State.values()) {
+                states.add(new MetricFamilySamples.Sample("circuit_breaker_state", stateLabelNames, Arrays.asList
+                        (breaker.getName(), state.label()), state == current ? 1 : 0));
+            }
+            List<String> labelValues = Collections.singletonList(breaker.getName());
+            failureRates.add(new MetricFamilySamples.Sample("circuit_breaker_failure_rate", labelNames, labelValues,
+                    breaker.getFailureRate()));
+            slowCallRates.add(new MetricFamilySamples.Sample("circuit_breaker_slow_call_rate", labelNames,
+                    labelValues, breaker.getSlowCallRate()));
+        }
+
+        List<MetricFamilySamples> samples = new ArrayList<>();
+        samples.add(new MetricFamilySamples("circuit_breaker_state", Type.GAUGE, "1 for the state each circuit " +
+                "breaker is in, 0 for the others.", states));
+        samples.add(new MetricFamilySamples("circuit_breaker_failure_rate", Type.GAUGE, "Share of the recent calls " +
+                "that failed.", failureRates));
+        samples.add(new MetricFamilySamples("circuit_breaker_slow_call_rate", Type.GAUGE, "Share of the recent " +
+                "calls that were slow.", slowCallRates));
+        return samples;
+    }
+}
@@ -0,0 +1,159 @@
+package works.weave.socks.orders.services;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import works.weave.socks.orders.config.ConcurrencyLimitConfigurationProperties;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admits at most a limited number of requests at once and turns away the rest. An adaptive limit follows the latency
+ * of the requests it admits: it grows while their latency stays near the long-run average, shrinks in proportion as
+ * they slow down, and backs off multiplicatively when they fail, so that under overload the service keeps completing
+ * what it admits instead of slowing every request until all of them time out.
+ */
+public class ConcurrencyLimiter {
+    static final Gauge limits = Gauge.build()
+            .name("concurrency_limit")
+            .help("Requests that may be handled at once, by group.")
+            .labelNames("group")
+            .register();
+
+    static final Gauge inFlightRequests = Gauge.build()
+            .name("concurrency_limit_in_flight")
+            .help("Requests being handled, by group.")
+            .labelNames("group")
+            .register();
+
+    static final Counter shed = Counter.build()
+            .name("concurrency_limit_shed_total")
+            .help("Requests turned away because the group was at its concurrency limit.")
+            .labelNames("group")
+            .register();
+
+    // The long-run latency follows each window's average by this much
+    private static final double LONG_RTT_WEIGHT = 0.05;
+
+    private final String name;
+    private final ConcurrencyLimitConfigurationProperties.Limit config;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Gauge.Child limitGauge;
+    private final Gauge.Child inFlightGauge;
+    private final Counter.Child shedCounter;
+    private volatile int limit;
+
+    // Guarded by this
+    private double estimatedLimit;
+    private double longRttNanos;
+    private long windowRttNanos;
+    private int windowSamples;
+    private int windowMaxInFlight;
+
+    public ConcurrencyLimiter(String name, ConcurrencyLimitConfigurationProperties.Limit config) {
+        this.name = name;
+        this.config = config;
+        this.estimatedLimit = config.getInitialLimit();
+        this.limit = config.getInitialLimit();
+        this.limitGauge = limits.labels(name);
+        this.inFlightGauge = inFlightRequests.labels(name);
+        this.shedCounter = shed.labels(name);
+        limitGauge.set(limit);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getRetryAfterSeconds() {
+        return config.getRetryAfterSeconds();
+    }
+
+    /**
+     * Admits a request if the group is under its limit, returning how many requests are in flight including this
+     * one, or 0 if it is turned away. An admitted request must be followed by exactly one of {@link #onSuccess},
+     * {@link #onDropped} or {@link #onIgnored}.
+     */
+    public int tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= limit) {
+                shedCounter.inc();
+                return 0;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                inFlightGauge.inc();
+                return current + 1;
+            }
+        }
+    }
+
+    /**
+     * Releases a request that completed, taking its latency as a sample.
+     */
+    public void onSuccess(long rttNanos, int inFlightAtStart) {
+        release();
+        if (config.isAdaptive()) {
+            sample(rttNanos, inFlightAtStart);
+        }
+    }
+
+    /**
+     * Releases a request that failed or timed out, a sign that the limit is too high.
+     */
+    public void onDropped() {
+        release();
+        if (config.isAdaptive()) {
+            synchronized (this) {
+                update(estimatedLimit * config.getBackoffRatio());
+            }
+        }
+    }
+
+    /**
+     * Releases a request whose outcome says nothing about load.
+     */
+    public void onIgnored() {
+        release();
+    }
+
+    private void release() {
+        inFlight.decrementAndGet();
+        inFlightGauge.dec();
+    }
+
+    private synchronized void sample(long rttNanos, int inFlightAtStart) {
+        windowRttNanos += rttNanos;
+        windowMaxInFlight = Math.max(windowMaxInFlight, inFlightAtStart);
+        if (++windowSamples < config.getWindowSize()) {
+            return;
+        }
+        double shortRtt = (double) windowRttNanos / windowSamples;
+        int maxInFlight = windowMaxInFlight;
+        windowRttNanos = 0;
+        windowSamples = 0;
+        windowMaxInFlight = 0;
+
+        if (longRttNanos == 0) {
+            longRttNanos = shortRtt;
+        } else {
+            longRttNanos = longRttNanos * (1 - LONG_RTT_WEIGHT) + shortRtt * LONG_RTT_WEIGHT;
+        }
+        // After a spell of high latency the average recovers faster, so the limit is not held down for long
+        if (longRttNanos > shortRtt * 2) {
+            longRttNanos *= 0.95;
+        }
+        // A limit that was never approached has not been tested; leave it as it is
+        if (maxInFlight < estimatedLimit / 2) {
+            return;
+        }
+        double gradient = Math.max(0.5, Math.min(1.0, config.getTolerance() * longRttNanos / shortRtt));
+        double newLimit = estimatedLimit * gradient + Math.sqrt(estimatedLimit);
+        update(estimatedLimit * (1 - config.getSmoothing()) + newLimit * config.getSmoothing());
+    }
+
+    private void update(double newLimit) {
+        estimatedLimit = Math.max(config.getMinLimit(), Math.min(config.getMaxLimit(), newLimit));
+        limit = (int) estimatedLimit;
+        limitGauge.set(limit);
+    }
+}
@@ -0,0 +1,121 @@
+package works.weave.socks.orders.services;
+
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * A fixed point in time by which a unit of work, such as creating one order, must finish. Every call made on its
+ * behalf gets only the time that is left, and when the deadline passes or is cancelled, work still in flight is
+ * aborted.
+ */
+public class Deadline {
+    private static final ScheduledThreadPoolExecutor timer = newTimer();
+    private static final ThreadLocal<Deadline> current = new ThreadLocal<>();
+
+    private final long expiresAt;
+    private final Queue<Runnable> cancellations = new ConcurrentLinkedQueue<>();
+    private final ScheduledFuture<?> expiry;
+    private volatile boolean cancelled;
+
+    private Deadline(long timeout, TimeUnit unit) {
+        this.expiresAt = System.nanoTime() + unit.toNanos(timeout);
+        this.expiry = timer.schedule(this::cancel, timeout, unit);
+    }
+
+    private Deadline(Deadline parent) {
+        this.expiresAt = parent.expiresAt;
+        this.expiry = null;
+    }
+
+    public static Deadline after(long timeout, TimeUnit unit) {
+        return new Deadline(timeout, unit);
+    }
+
+    /**
+     * A deadline with the same expiry that is cancelled along with this one but can also be cancelled on its own, to
+     * abort one call without aborting the others made under this deadline.
+     */
+    public Deadline fork() {
+        Deadline child = new Deadline(this);
+        onCancel(child::cancel);
+        return child;
+    }
+
+    /**
+     * The deadline of the call running on this thread, if any.
+     */
+    public static Deadline current() {
+        return current.get();
+    }
+
+    public long remainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(expiresAt - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return cancelled || System.nanoTime() - expiresAt >= 0;
+    }
+
+    public void check() {
+        if (isExpired()) {
+            throw new DeadlineExceededException("Deadline exceeded");
+        }
+    }
+
+    /**
+     * Registers work to abort when the deadline is cancelled or runs out. It runs at once if that has already happened.
+     */
+    public void onCancel(Runnable cancellation) {
+        cancellations.add(cancellation);
+        if (cancelled) {
+            runCancellations();
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+        if (expiry != null) {
+            expiry.cancel(false);
+        }
+        runCancellations();
+    }
+
+    /**
+     * Runs the call with this as the current deadline, failing without running it if no time is left.
+     */
+    public <T> T call(Supplier<T> call) {
+        check();
+        Deadline previous = current.get();
+        current.set(this);
+        try {
+            return call.get();
+        } finally {
+            if (previous == null) {
+                current.remove();
+            } else {
+                current.set(previous);
+            }
+        }
+    }
+
+    private void runCancellations() {
+        Runnable cancellation;
+        while ((cancellation = cancellations.poll()) != null) {
+            cancellation.run();
+        }
+    }
+
+    private static ScheduledThreadPoolExecutor newTimer() {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("deadline-timer-");
+        threadFactory.setDaemon(true);
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, threadFactory);
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+}
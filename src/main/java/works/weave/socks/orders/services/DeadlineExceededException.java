@@ -0,0 +1,7 @@
+package works.weave.socks.orders.services;
+
+public class DeadlineExceededException extends IllegalStateException {
+    public DeadlineExceededException(String s) {
+        super(s);
+    }
+}
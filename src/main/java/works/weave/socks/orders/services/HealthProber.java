@@ -0,0 +1,177 @@
+package works.weave.socks.orders.services;
+
+import io.prometheus.client.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.http.ResponseEntity;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import works.weave.socks.orders.config.HealthProbeConfigurationProperties;
+import works.weave.socks.orders.config.OrdersConfigurationProperties;
+import works.weave.socks.orders.config.RestProxyTemplate;
+import works.weave.socks.orders.entities.HealthCheck;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Checks Mongo and each downstream service in the background, each on its own interval and with its own timeout, and
+ * keeps the latest results for {@code /health} to serve without doing any work. A check that is still running when
+ * the next one is due is left alone rather than joined by another, so a hung dependency costs one thread, not one
+ * per probe.
+ */
+@Component
+public class HealthProber {
+    static final Histogram probeLatency = Histogram.build()
+            .name("health_probe_duration_seconds")
+            .help("Time taken by background health checks, by target and result: ok, err or timeout.")
+            .labelNames("target", "result")
+            .buckets(0.001, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5)
+            .register();
+
+    private static final String OK = "OK";
+    private static final String ERR = "err";
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    private final HealthProbeConfigurationProperties config;
+    private final OrdersConfigurationProperties ordersConfig;
+    private final MongoOperations mongoOperations;
+    private final RestProxyTemplate restProxyTemplate;
+    private final ConcurrentMap<String, HealthCheck> results = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+    private final ExecutorService checks;
+    private volatile Map<String, List<HealthCheck>> health;
+
+    @Autowired
+    public HealthProber(HealthProbeConfigurationProperties config, OrdersConfigurationProperties ordersConfig,
+                        MongoOperations mongoOperations, RestProxyTemplate restProxyTemplate) {
+        this.config = config;
+        this.ordersConfig = ordersConfig;
+        this.mongoOperations = mongoOperations;
+        this.restProxyTemplate = restProxyTemplate;
+        CustomizableThreadFactory schedulerThreads = new CustomizableThreadFactory("health-prober-");
+        schedulerThreads.setDaemon(true);
+        this.scheduler = Executors.newScheduledThreadPool(Math.max(1, config.getTargets().size()),
+                schedulerThreads);
+        CustomizableThreadFactory checkThreads = new CustomizableThreadFactory("health-check-");
+        checkThreads.setDaemon(true);
+        this.checks = Executors.newCachedThreadPool(checkThreads);
+        for (String target : config.getTargets().keySet()) {
+            results.put(target, new HealthCheck(target, "unknown", new Date()));
+        }
+        publish();
+    }
+
+    @PostConstruct
+    public void start() {
+        for (String name : config.getTargets().keySet()) {
+            Probe probe = new Probe(name, check(name), config.getTimeout(name));
+            scheduler.scheduleWithFixedDelay(probe, 0, config.getInterval(name), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        scheduler.shutdownNow();
+        checks.shutdownNow();
+    }
+
+    /**
+     * The latest results, in the shape {@code /health} has always returned them.
+     */
+    public Map<String, List<HealthCheck>> getHealth() {
+        return health;
+    }
+
+    private Callable<Boolean> check(String name) {
+        if (HealthProbeConfigurationProperties.DATABASE.equals(name)) {
+            return () -> {
+                mongoOperations.executeCommand("{ ping: 1 }");
+                return true;
+            };
+        }
+        URI uri = config.getUri(name, ordersConfig);
+        if (uri == null) {
+            throw new IllegalStateException("Health probe target " + name + " needs a host or a uri");
+        }
+        long timeout = config.getTimeout(name);
+        return () -> {
+            Deadline deadline = Deadline.after(timeout, TimeUnit.MILLISECONDS);
+            try {
+                ResponseEntity<String> response = deadline.call(() -> restProxyTemplate.getRestTemplate()
+                        .getForEntity(uri, String.class));
+                return response.getStatusCode().is2xxSuccessful();
+            } finally {
+                deadline.cancel();
+            }
+        };
+    }
+
+    private synchronized void publish() {
+        List<HealthCheck> healthChecks = new ArrayList<>(results.size() + 1);
+        healthChecks.add(new HealthCheck("orders", OK, new Date()));
+        for (String target : config.getTargets().keySet()) {
+            healthChecks.add(results.get(target));
+        }
+        health = Collections.singletonMap("health", healthChecks);
+    }
+
+    private class Probe implements Runnable {
+        private final String name;
+        private final Callable<Boolean> check;
+        private final long timeoutMillis;
+        private Future<Boolean> running;
+
+        private Probe(String name, Callable<Boolean> check, long timeoutMillis) {
+            this.name = name;
+            this.check = check;
+            this.timeoutMillis = timeoutMillis;
+        }
+
+        @Override
+        public void run() {
+            if (running != null && !running.isDone()) {
+                // Still stuck on an earlier check, which has already been reported as timed out
+                return;
+            }
+            long start = System.nanoTime();
+            String result;
+            try {
+                running = checks.submit(check);
+                result = running.get(timeoutMillis, TimeUnit.MILLISECONDS) ? OK : ERR;
+            } catch (TimeoutException e) {
+                // Left running: cancelling would mark it done while its thread is still blocked
+                result = "timeout";
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException | RuntimeException e) {
+                LOG.debug("Health check of " + name + " failed", e);
+                result = ERR;
+            }
+            probeLatency.labels(name, result.equals(OK) ? "ok" : result).observe((System.nanoTime() - start) /
+                    1000000000.0);
+            results.put(name, new HealthCheck(name, result.equals(OK) ? OK : ERR, new Date()));
+            publish();
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package works.weave.socks.orders.services;
+
+import io.prometheus.client.Counter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import works.weave.socks.orders.config.Downstream;
+import works.weave.socks.orders.config.HedgingConfigurationProperties;
+
+import javax.annotation.PreDestroy;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Sends a second copy of an idempotent request when the first has taken longer than most recent requests to the same
+ * downstream, and takes whichever answers first. Each copy runs under its own fork of the caller's deadline, so the
+ * loser is aborted without touching anything else. Hedges are limited to a share of all requests, so that a
+ * downstream that is slow across the board is not sent twice the load.
+ */
+@Component
+public class Hedging {
+    static final Counter hedges = Counter.build()
+            .name("hedged_requests_total")
+            .help("Hedged requests by outcome: sent, won, or skipped for lack of budget.")
+            .labelNames("downstream", "result")
+            .register();
+
+    private final HedgingConfigurationProperties config;
+    private final Map<Downstream, LatencyTracker> trackers = new EnumMap<>(Downstream.class);
+    private final Budget budget;
+    private final ScheduledThreadPoolExecutor timer;
+
+    @Autowired
+    public Hedging(HedgingConfigurationProperties config) {
+        this.config = config;
+        for (Downstream downstream : Downstream.values()) {
+            trackers.put(downstream, new LatencyTracker(config));
+        }
+        this.budget = new Budget(config.getBudgetPercent() / 100);
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("hedging-timer-");
+        threadFactory.setDaemon(true);
+        this.timer = new ScheduledThreadPoolExecutor(1, threadFactory);
+        timer.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * Makes the request, hedging it if hedging is enabled. The attempt is given the deadline to make the request
+     * under and must not have side effects that matter if it is made twice.
+     */
+    public <T> CompletableFuture<T> submit(Downstream downstream, Deadline deadline,
+                                           Function<Deadline, CompletableFuture<T>> attempt) {
+        if (!config.isEnabled()) {
+            return attempt.apply(deadline);
+        }
+        LatencyTracker tracker = trackers.get(downstream);
+        budget.deposit();
+        Race<T> race = new Race<>(downstream, tracker);
+        race.start(attempt, deadline, false);
+
+        long delay = tracker.hedgeDelayNanos();
+        if (delay >= 0 && !race.result.isDone()) {
+            ScheduledFuture<?> hedge = timer.schedule(() -> {
+                if (race.result.isDone()) {
+                    return;
+                }
+                if (!budget.withdraw()) {
+                    hedges.labels(downstream.getName(), "budget_exhausted").inc();
+                    return;
+                }
+                hedges.labels(downstream.getName(), "sent").inc();
+                race.start(attempt, deadline, true);
+            }, delay, TimeUnit.NANOSECONDS);
+            race.result.whenComplete((value, e) -> hedge.cancel(false));
+        }
+        return race.result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    /**
+     * The attempts at one request. The first to succeed completes the result and the others are aborted; if all
+     * fail, the result fails with the last failure.
+     */
+    private static class Race<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private final AtomicInteger outstanding = new AtomicInteger();
+        private final Downstream downstream;
+        private final LatencyTracker tracker;
+
+        private Race(Downstream downstream, LatencyTracker tracker) {
+            this.downstream = downstream;
+            this.tracker = tracker;
+        }
+
+        private void start(Function<Deadline, CompletableFuture<T>> attempt, Deadline deadline, boolean hedge) {
+            Deadline fork = deadline.fork();
+            result.whenComplete((value, e) -> fork.cancel());
+            outstanding.incrementAndGet();
+            long start = System.nanoTime();
+            attempt.apply(fork).whenComplete((value, e) -> {
+                if (e == null) {
+                    tracker.record(System.nanoTime() - start);
+                    if (result.complete(value) && hedge) {
+                        hedges.labels(downstream.getName(), "won").inc();
+                    }
+                } else if (outstanding.decrementAndGet() == 0) {
+                    result.completeExceptionally(e);
+                }
+            });
+        }
+    }
+
+    /**
+     * The recent latencies of one downstream, from which the hedge delay is taken. The percentile is recomputed
+     * every so many samples rather than on every request.
+     */
+    private static class LatencyTracker {
+        private static final int RECOMPUTE_EVERY = 64;
+
+        private final long[] samples;
+        private final double percentile;
+        private final int minSamples;
+        private final long minDelayNanos;
+        private int next;
+        private int count;
+        private int sinceRecompute;
+        private volatile long delayNanos = -1;
+
+        private LatencyTracker(HedgingConfigurationProperties config) {
+            this.samples = new long[Math.max(1, config.getWindowSize())];
+            this.percentile = config.getPercentile();
+            this.minSamples = Math.min(config.getMinSamples(), samples.length);
+            this.minDelayNanos = TimeUnit.MILLISECONDS.toNanos(config.getMinDelayMillis());
+        }
+
+        private synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            if (++sinceRecompute >= RECOMPUTE_EVERY && count >= minSamples) {
+                sinceRecompute = 0;
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(percentile / 100 * count) - 1;
+                delayNanos = Math.max(minDelayNanos, sorted[Math.max(0, Math.min(count - 1, index))]);
+            }
+        }
+
+        /**
+         * How long to wait before hedging, or -1 while there are too few samples to tell.
+         */
+        private long hedgeDelayNanos() {
+            return delayNanos;
+        }
+    }
+
+    /**
+     * Every request earns a fraction of a hedge, up to a small reserve, and every hedge spends a whole one.
+     */
+    private static class Budget {
+        private static final double MAX_BALANCE = 10;
+
+        private final double ratio;
+        private double balance;
+
+        private Budget(double ratio) {
+            this.ratio = ratio;
+        }
+
+        private synchronized void deposit() {
+            balance = Math.min(MAX_BALANCE, balance + ratio);
+        }
+
+        private synchronized boolean withdraw() {
+            if (balance < 1) {
+                return false;
+            }
+            balance -= 1;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package works.weave.socks.orders.services;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.CONFLICT)
+public class IdempotencyConflictException extends IllegalStateException {
+    public IdempotencyConflictException(String s) {
+        super(s);
+    }
+}
@@ -0,0 +1,11 @@
+package works.weave.socks.orders.services;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.UNPROCESSABLE_ENTITY)
+public class IdempotencyKeyReusedException extends IllegalStateException {
+    public IdempotencyKeyReusedException(String s) {
+        super(s);
+    }
+}
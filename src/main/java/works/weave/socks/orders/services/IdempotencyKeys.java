@@ -0,0 +1,206 @@
+package works.weave.socks.orders.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.prometheus.client.Counter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Service;
+import works.weave.socks.orders.entities.CustomerOrder;
+import works.weave.socks.orders.entities.IdempotencyRecord;
+import works.weave.socks.orders.repositories.IdempotencyRecordRepository;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Makes order creation idempotent per customer and Idempotency-Key. The first request for a key claims it by
+ * inserting its {@link IdempotencyRecord}, so of several instances receiving the same key only one places the order;
+ * the others answer with that order once it is recorded, or with 409 while it is still being placed. A request whose
+ * key is already in flight on this instance waits for that order instead, and a key that completed recently is
+ * answered from memory. A request that reuses a key for a different order is answered with 422. A key whose order
+ * failed is released, so the client can retry it.
+ */
+@Service
+public class IdempotencyKeys {
+    static final Counter requests = Counter.build()
+            .name("idempotency_requests_total")
+            .help("Orders submitted with an Idempotency-Key, by how they were answered.")
+            .labelNames("result")
+            .register();
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    private final ConcurrentMap<String, Claim> inFlight = new ConcurrentHashMap<>();
+    private final Cache<String, Claim> recent;
+    private final IdempotencyRecordRepository records;
+    private final Bulkheads bulkheads;
+
+    @Autowired
+    public IdempotencyKeys(IdempotencyRecordRepository records, Bulkheads bulkheads,
+                           @Value("${orders.idempotency.recent-seconds:600}") long recentSeconds,
+                           @Value("${orders.idempotency.max-recent:10000}") long maxRecent) {
+        this.records = records;
+        this.bulkheads = bulkheads;
+        this.recent = Caffeine.newBuilder()
+                .maximumSize(maxRecent)
+                .expireAfterWrite(recentSeconds, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * A digest of the parts of a request, to tell a retry of it from a different request sent with the same key.
+     */
+    public static String fingerprint(Object... parts) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        for (Object part : parts) {
+            digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return Base64.getEncoder().encodeToString(digest.digest());
+    }
+
+    /**
+     * Returns the order already created for the customer's key, or the one being created for it, or else creates
+     * it. Fails with {@link IdempotencyKeyReusedException} if the key was used for a request with another
+     * fingerprint.
+     */
+    public CompletableFuture<CustomerOrder> execute(String customer, String key, String fingerprint,
+                                                    Supplier<CompletableFuture<CustomerOrder>> create) {
+        String id = IdempotencyRecord.idFor(customer, key);
+        Claim recentClaim = recent.getIfPresent(id);
+        if (recentClaim != null) {
+            requests.labels("recent").inc();
+            return recentClaim.answer(key, fingerprint);
+        }
+
+        Claim claim = new Claim(fingerprint);
+        Claim existing = inFlight.putIfAbsent(id, claim);
+        if (existing != null) {
+            requests.labels("in_flight").inc();
+            return existing.answer(key, fingerprint);
+        }
+
+        IdempotencyRecord record = new IdempotencyRecord(customer, key, fingerprint);
+        CompletableFuture<IdempotencyRecord> previous;
+        try {
+            previous = CompletableFuture.supplyAsync(() -> claimOrFind(record), bulkheads.defaultExecutor());
+        } catch (RejectedExecutionException e) {
+            inFlight.remove(id, claim);
+            claim.order.completeExceptionally(e);
+            return claim.order;
+        }
+        previous.thenCompose(other -> {
+            if (other == null) {
+                requests.labels("new").inc();
+                CompletableFuture<CustomerOrder> created;
+                try {
+                    created = create.get();
+                } catch (RuntimeException e) {
+                    release(record);
+                    throw e;
+                }
+                return created.whenComplete((order, e) -> {
+                    if (e == null) {
+                        remember(record, order);
+                    } else {
+                        release(record);
+                    }
+                });
+            }
+            requests.labels("persisted").inc();
+            if (!fingerprint.equals(other.getFingerprint())) {
+                throw reused(key);
+            }
+            if (other.getOrder() == null) {
+                throw new IdempotencyConflictException("The order for Idempotency-Key " + key + " is still being " +
+                        "placed. Try again later.");
+            }
+            return CompletableFuture.completedFuture(other.getOrder());
+        }).whenComplete((created, e) -> {
+            if (e == null) {
+                recent.put(id, claim);
+                claim.order.complete(created);
+            } else {
+                claim.order.completeExceptionally(e);
+            }
+            inFlight.remove(id, claim);
+        });
+        return claim.order;
+    }
+
+    /**
+     * Inserts the record, returning null if this request now holds the key, or else the record of the request that
+     * does.
+     */
+    private IdempotencyRecord claimOrFind(IdempotencyRecord record) {
+        try {
+            records.insert(record);
+            return null;
+        } catch (DuplicateKeyException e) {
+            IdempotencyRecord other = records.findOne(record.getId());
+            if (other == null) {
+                throw new IdempotencyConflictException("The order for Idempotency-Key " + record.getKey() + " has " +
+                        "just failed. Try again.");
+            }
+            return other;
+        }
+    }
+
+    private void remember(IdempotencyRecord record, CustomerOrder order) {
+        record.setOrder(order);
+        try {
+            records.save(record);
+        } catch (RuntimeException e) {
+            // The order exists, but until the claim expires other instances answer retries with a conflict
+            LOG.warn("Unable to record order " + order.getId() + " for Idempotency-Key " + record.getKey(), e);
+        }
+    }
+
+    private void release(IdempotencyRecord record) {
+        try {
+            records.delete(record.getId());
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to release Idempotency-Key " + record.getKey() + " after its order failed", e);
+        }
+    }
+
+    private static IdempotencyKeyReusedException reused(String key) {
+        return new IdempotencyKeyReusedException("Idempotency-Key " + key + " was already used for a different " +
+                "order.");
+    }
+
+    private static class Claim {
+        private final String fingerprint;
+        private final CompletableFuture<CustomerOrder> order = new CompletableFuture<>();
+
+        private Claim(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        private CompletableFuture<CustomerOrder> answer(String key, String fingerprint) {
+            if (this.fingerprint.equals(fingerprint)) {
+                return order;
+            }
+            CompletableFuture<CustomerOrder> reused = new CompletableFuture<>();
+            reused.completeExceptionally(reused(key));
+            return reused;
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package works.weave.socks.orders.services;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import works.weave.socks.orders.entities.CustomerOrder;
+import works.weave.socks.orders.repositories.CustomerOrderRepository;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Saves orders straight to Mongo on the calling thread.
+ */
+@Service
+@ConditionalOnProperty(prefix = "orders.write-behind", name = "enabled", havingValue = "false", matchIfMissing = true)
+public class MongoOrderPersister implements OrderPersister {
+    private final CustomerOrderRepository customerOrderRepository;
+
+    @Autowired
+    public MongoOrderPersister(CustomerOrderRepository customerOrderRepository) {
+        this.customerOrderRepository = customerOrderRepository;
+    }
+
+    @Override
+    public CompletableFuture<CustomerOrder> save(CustomerOrder order) {
+        return CompletableFuture.completedFuture(customerOrderRepository.save(order));
+    }
+
+    @Override
+    public CompletableFuture<List<CustomerOrder>> insert(List<CustomerOrder> orders) {
+        return CompletableFuture.completedFuture(customerOrderRepository.insert(orders));
+    }
+}
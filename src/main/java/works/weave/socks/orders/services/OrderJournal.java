@@ -0,0 +1,344 @@
+package works.weave.socks.orders.services;
+
+import io.prometheus.client.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.CRC32;
+
+/**
+ * An append-only log of records in memory-mapped segment files. A record is its length, a CRC32 of its payload and
+ * the payload; a zero length ends the records of a segment. Appends are made durable together: one flusher thread
+ * forces every segment written since its last pass and then hands the futures of all the records it covered to an
+ * executor to complete, so that whatever depends on them never holds up the next force.
+ * A checkpoint file holds how far the log has been read and handed on, and segments wholly before it are deleted.
+ */
+class OrderJournal implements Closeable {
+    static final Histogram fsyncLatency = Histogram.build()
+            .name("order_journal_fsync_seconds")
+            .help("Time taken to force the order journal to disk.")
+            .register();
+
+    static final Histogram fsyncBatchSize = Histogram.build()
+            .name("order_journal_fsync_batch_size")
+            .help("Records made durable by one force of the order journal.")
+            .buckets(1, 2, 5, 10, 20, 50, 100, 200, 500)
+            .register();
+
+    private static final int HEADER_SIZE = 8;
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    private final Path directory;
+    private final int segmentSize;
+    private final NavigableMap<Long, MappedByteBuffer> segments = new ConcurrentSkipListMap<>();
+    private final MappedByteBuffer checkpoint;
+    private final Thread flusher;
+    private final Executor completions;
+
+    // Guarded by this
+    private long writeSegment;
+    private MappedByteBuffer writeBuffer;
+    private List<CompletableFuture<Void>> pending = new ArrayList<>();
+    private boolean closed;
+
+    private volatile Position durable;
+    private Position read;
+    private final int recovered;
+
+    OrderJournal(Path directory, int segmentSize, Executor completions) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.completions = completions;
+        Files.createDirectories(directory);
+        this.checkpoint = map(directory.resolve("checkpoint"), 16);
+        this.read = new Position(checkpoint.getLong(0), checkpoint.getInt(8));
+
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*")) {
+            for (Path file : files) {
+                long index = Long.parseLong(file.getFileName().toString().substring(SEGMENT_PREFIX.length()));
+                if (index < read.segment) {
+                    Files.delete(file);
+                } else {
+                    segments.put(index, map(file, segmentSize));
+                }
+            }
+        }
+        if (segments.isEmpty()) {
+            segments.put(read.segment, map(segmentFile(read.segment), segmentSize));
+        } else if (!segments.containsKey(read.segment)) {
+            read = new Position(segments.firstKey(), 0);
+        }
+
+        // Find the end of the intact records, counting those not yet read, and clear anything torn after it
+        int count = 0;
+        Position end = read;
+        for (Map.Entry<Long, MappedByteBuffer> segment : segments.entrySet()) {
+            ByteBuffer buffer = segment.getValue().duplicate();
+            buffer.position(segment.getKey() == read.segment ? read.offset : 0);
+            while (readRecord(buffer) != null) {
+                count++;
+            }
+            end = new Position(segment.getKey(), buffer.position());
+        }
+        this.recovered = count;
+        this.writeSegment = end.segment;
+        this.writeBuffer = segments.get(end.segment);
+        writeBuffer.position(end.offset);
+        byte[] zeros = new byte[64 * 1024];
+        while (writeBuffer.hasRemaining()) {
+            writeBuffer.put(zeros, 0, Math.min(zeros.length, writeBuffer.remaining()));
+        }
+        writeBuffer.position(end.offset);
+        writeBuffer.force();
+        this.durable = end;
+
+        this.flusher = new Thread(this::flushLoop, "order-journal-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    /**
+     * Records left unread by the previous run.
+     */
+    int recovered() {
+        return recovered;
+    }
+
+    /**
+     * Appends a record, completing the returned future once it is on disk.
+     */
+    synchronized CompletableFuture<Void> append(byte[] payload) {
+        if (closed) {
+            throw new IllegalStateException("Order journal is closed");
+        }
+        int size = HEADER_SIZE + payload.length;
+        if (size + 4 > segmentSize) {
+            throw new IllegalArgumentException("Record of " + payload.length + " bytes does not fit in a journal " +
+                    "segment");
+        }
+        if (writeBuffer.remaining() < size + 4) {
+            roll();
+        }
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        writeBuffer.putInt(payload.length).putInt((int) crc.getValue()).put(payload);
+
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        pending.add(written);
+        notifyAll();
+        return written;
+    }
+
+    /**
+     * Reads up to max durable records after the last checkpoint, or after the records returned by the previous
+     * read if that has not been checkpointed yet.
+     */
+    List<Record> read(int max) {
+        List<Record> records = new ArrayList<>();
+        Position end = durable;
+        Position position = read;
+        while (records.size() < max && position.compareTo(end) < 0) {
+            ByteBuffer buffer = segments.get(position.segment).duplicate();
+            buffer.position(position.offset);
+            buffer.limit(position.segment == end.segment ? end.offset : buffer.capacity());
+            byte[] payload = readRecord(buffer);
+            if (payload == null) {
+                if (position.segment == end.segment) {
+                    throw new IllegalStateException("Order journal is corrupt at " + position);
+                }
+                position = new Position(segments.higherKey(position.segment), 0);
+                continue;
+            }
+            position = new Position(position.segment, buffer.position());
+            records.add(new Record(payload, position));
+        }
+        read = position;
+        return records;
+    }
+
+    /**
+     * Marks everything up to and including the record as handed on, so it is not read again after a restart.
+     */
+    void checkpoint(Record last) throws IOException {
+        Position position = last.next;
+        checkpoint.putLong(0, position.segment).putInt(8, position.offset);
+        checkpoint.force();
+        for (Long index : new ArrayList<>(segments.headMap(position.segment).keySet())) {
+            segments.remove(index);
+            Files.deleteIfExists(segmentFile(index));
+        }
+    }
+
+    /**
+     * Rewinds reading to the last checkpoint, so records read but not handed on are read again.
+     */
+    void rewind() {
+        read = new Position(checkpoint.getLong(0), checkpoint.getInt(8));
+    }
+
+    @Override
+    public void close() {
+        synchronized (this) {
+            closed = true;
+            notifyAll();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void roll() {
+        try {
+            writeSegment++;
+            writeBuffer = map(segmentFile(writeSegment), segmentSize);
+            segments.put(writeSegment, writeBuffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to create order journal segment " + writeSegment, e);
+        }
+    }
+
+    private void flushLoop() {
+        while (true) {
+            List<CompletableFuture<Void>> batch;
+            Position target;
+            synchronized (this) {
+                while (pending.isEmpty() && !closed) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+                if (pending.isEmpty()) {
+                    return;
+                }
+                batch = pending;
+                pending = new ArrayList<>();
+                target = new Position(writeSegment, writeBuffer.position());
+            }
+
+            Histogram.Timer timer = fsyncLatency.startTimer();
+            try {
+                for (MappedByteBuffer segment : segments.subMap(durable.segment, true, target.segment, true)
+                        .values()) {
+                    segment.force();
+                }
+                durable = target;
+                batch.forEach(written -> complete(written, null));
+            } catch (RuntimeException e) {
+                LOG.error("Unable to force the order journal to disk", e);
+                batch.forEach(written -> complete(written, e));
+            } finally {
+                timer.observeDuration();
+                fsyncBatchSize.observe(batch.size());
+            }
+        }
+    }
+
+    private void complete(CompletableFuture<Void> written, Throwable error) {
+        Runnable completion = () -> {
+            if (error == null) {
+                written.complete(null);
+            } else {
+                written.completeExceptionally(error);
+            }
+        };
+        try {
+            completions.execute(completion);
+        } catch (RejectedExecutionException e) {
+            // Shutting down: nothing is left to hold up
+            completion.run();
+        }
+    }
+
+    private static byte[] readRecord(ByteBuffer buffer) {
+        if (buffer.remaining() < HEADER_SIZE) {
+            return null;
+        }
+        int start = buffer.position();
+        int length = buffer.getInt();
+        int checksum = buffer.getInt();
+        if (length <= 0 || length > buffer.remaining()) {
+            buffer.position(start);
+            return null;
+        }
+        byte[] payload = new byte[length];
+        buffer.get(payload);
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+            buffer.position(start);
+            return null;
+        }
+        return payload;
+    }
+
+    private Path segmentFile(long index) {
+        return directory.resolve(String.format("%s%016d", SEGMENT_PREFIX, index));
+    }
+
+    private static MappedByteBuffer map(Path file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    static class Record {
+        private final byte[] payload;
+        private final Position next;
+
+        private Record(byte[] payload, Position next) {
+            this.payload = payload;
+            this.next = next;
+        }
+
+        byte[] getPayload() {
+            return payload;
+        }
+    }
+
+    private static class Position implements Comparable<Position> {
+        private final long segment;
+        private final int offset;
+
+        private Position(long segment, int offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+
+        @Override
+        public int compareTo(Position other) {
+            return segment != other.segment ? Long.compare(segment, other.segment) : Integer.compare(offset, other
+                    .offset);
+        }
+
+        @Override
+        public String toString() {
+            return "segment " + segment + " offset " + offset;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package works.weave.socks.orders.services;
+
+import works.weave.socks.orders.entities.CustomerOrder;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Stores new orders. The returned future completes, with the orders' ids assigned, once they are durable.
+ */
+public interface OrderPersister {
+    CompletableFuture<CustomerOrder> save(CustomerOrder order);
+
+    CompletableFuture<List<CustomerOrder>> insert(List<CustomerOrder> orders);
+}
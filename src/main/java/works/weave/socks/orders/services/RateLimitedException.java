@@ -0,0 +1,11 @@
+package works.weave.socks.orders.services;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(value = HttpStatus.TOO_MANY_REQUESTS)
+public class RateLimitedException extends IllegalStateException {
+    public RateLimitedException(String s) {
+        super(s);
+    }
+}
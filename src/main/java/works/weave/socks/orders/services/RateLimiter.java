@@ -0,0 +1,133 @@
+package works.weave.socks.orders.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.prometheus.client.Counter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import works.weave.socks.orders.config.RateLimitConfigurationProperties;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token buckets per customer and per client for each rate-limited endpoint. The buckets live in bounded caches that
+ * drop those left idle, so a flood of distinct keys costs memory up to the bound and no more; the caches are striped
+ * internally and each bucket locks only itself, so requests for different keys never wait on each other.
+ */
+@Component
+public class RateLimiter {
+    static final List<String> ENDPOINTS = Arrays.asList(RateLimitConfigurationProperties.CREATE,
+            RateLimitConfigurationProperties.SEARCH, RateLimitConfigurationProperties.IDEMPOTENCY);
+
+    static final Counter throttled = Counter.build()
+            .name("rate_limit_throttled_total")
+            .help("Requests turned away for being over a rate limit, by endpoint and key: customer or client.")
+            .labelNames("endpoint", "key")
+            .register();
+
+    private final Map<String, Buckets> customers = new HashMap<>();
+    private final Map<String, Buckets> clients = new HashMap<>();
+    private final int retryAfterSeconds;
+
+    @Autowired
+    public RateLimiter(RateLimitConfigurationProperties config) {
+        for (String endpoint : ENDPOINTS) {
+            RateLimitConfigurationProperties.Limit limit = config.getLimit(endpoint);
+            if (!limit.isEnabled()) {
+                continue;
+            }
+            if (limit.getCustomer().isEnabled()) {
+                customers.put(endpoint, new Buckets(endpoint, "customer", limit.getCustomer(), config));
+            }
+            if (limit.getClient().isEnabled()) {
+                clients.put(endpoint, new Buckets(endpoint, "client", limit.getClient(), config));
+            }
+        }
+        this.retryAfterSeconds = config.getRetryAfterSeconds();
+    }
+
+    public int getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+    /**
+     * Takes a token from the customer's bucket for the endpoint, returning false if there is none left.
+     */
+    public boolean tryAcquireCustomer(String endpoint, String customerId) {
+        return tryAcquireCustomer(endpoint, customerId, System.nanoTime());
+    }
+
+    /**
+     * Takes a token from the client's bucket for the endpoint, returning false if there is none left.
+     */
+    public boolean tryAcquireClient(String endpoint, String client) {
+        return tryAcquireClient(endpoint, client, System.nanoTime());
+    }
+
+    boolean tryAcquireCustomer(String endpoint, String customerId, long now) {
+        return tryAcquire(customers.get(endpoint), customerId, now);
+    }
+
+    boolean tryAcquireClient(String endpoint, String client, long now) {
+        return tryAcquire(clients.get(endpoint), client, now);
+    }
+
+    private static boolean tryAcquire(Buckets buckets, String key, long now) {
+        if (buckets == null || key == null) {
+            return true;
+        }
+        if (buckets.get(key, now).tryAcquire(now)) {
+            return true;
+        }
+        buckets.throttled.inc();
+        return false;
+    }
+
+    private static class Buckets {
+        private final Cache<String, TokenBucket> cache;
+        private final double tokensPerNano;
+        private final double capacity;
+        private final Counter.Child throttled;
+
+        private Buckets(String endpoint, String key, RateLimitConfigurationProperties.Bucket bucket,
+                        RateLimitConfigurationProperties config) {
+            this.tokensPerNano = bucket.getRatePerSecond() / TimeUnit.SECONDS.toNanos(1);
+            this.capacity = Math.max(1, bucket.getBurst());
+            // A bucket idle for long enough to have refilled is no different from a new one, so only then may it go
+            long refillSeconds = (long) Math.ceil(capacity / bucket.getRatePerSecond());
+            this.cache = Caffeine.newBuilder()
+                    .maximumSize(config.getMaxKeys())
+                    .expireAfterAccess(Math.max(config.getIdleSeconds(), refillSeconds), TimeUnit.SECONDS)
+                    .build();
+            this.throttled = RateLimiter.throttled.labels(endpoint, key);
+        }
+
+        private TokenBucket get(String key, long now) {
+            return cache.get(key, k -> new TokenBucket(capacity, now));
+        }
+
+        private class TokenBucket {
+            private double tokens;
+            private long refilledAt;
+
+            private TokenBucket(double tokens, long now) {
+                this.tokens = tokens;
+                this.refilledAt = now;
+            }
+
+            private synchronized boolean tryAcquire(long now) {
+                tokens = Math.min(capacity, tokens + (now - refilledAt) * tokensPerNano);
+                refilledAt = now;
+                if (tokens < 1) {
+                    return false;
+                }
+                tokens -= 1;
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package works.weave.socks.orders.services;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.prometheus.client.Counter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.hateoas.Resource;
+import org.springframework.stereotype.Component;
+import works.weave.socks.orders.config.CacheConfigurationProperties;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded caches of the customer, address and card resources, keyed by URI. An entry is served as is until its TTL
+ * passes; after that, if the downstream gave it an ETag, it is kept for the revalidation window and revalidated with
+ * a conditional GET instead of being fetched again in full. An entry without an ETag cannot be revalidated, so it is
+ * evicted at its TTL.
+ */
+@Component
+public class ResourceCache {
+    static final List<String> CACHEABLE_TYPES = Arrays.asList("customers", "addresses", "cards");
+
+    static final Counter requests = Counter.build()
+            .name("resource_cache_requests_total")
+            .help("Resource cache lookups by outcome: hit, miss, stale or revalidated.")
+            .labelNames("type", "result")
+            .register();
+
+    static final Counter evictions = Counter.build()
+            .name("resource_cache_evictions_total")
+            .help("Resource cache entries evicted for size or age.")
+            .labelNames("type")
+            .register();
+
+    private final Map<String, Caches> caches = new HashMap<>();
+
+    @Autowired
+    public ResourceCache(CacheConfigurationProperties config) {
+        for (String type : CACHEABLE_TYPES) {
+            CacheConfigurationProperties.Policy policy = config.getPolicy(type);
+            if (!policy.isEnabled()) {
+                continue;
+            }
+            caches.put(type, new Caches(type, policy));
+        }
+    }
+
+    public boolean isCacheable(URI uri) {
+        return caches.containsKey(typeOf(uri));
+    }
+
+    /**
+     * Returns the cached entry for the URI, fresh or stale, or null when there is none.
+     */
+    public Entry get(URI uri) {
+        String type = typeOf(uri);
+        Caches cache = caches.get(type);
+        Entry entry = cache == null ? null : cache.get(uri);
+        requests.labels(type, entry == null ? "miss" : entry.isFresh() ? "hit" : "stale").inc();
+        return entry;
+    }
+
+    public void put(URI uri, Resource<?> resource, String etag) {
+        Caches cache = caches.get(typeOf(uri));
+        if (cache != null && resource != null) {
+            cache.put(uri, resource, etag);
+        }
+    }
+
+    /**
+     * Marks a stale entry fresh again after the downstream answered 304 Not Modified.
+     */
+    public void revalidated(URI uri, Entry entry) {
+        String type = typeOf(uri);
+        requests.labels(type, "revalidated").inc();
+        put(uri, entry.getResource(), entry.getEtag());
+    }
+
+    private static String typeOf(URI uri) {
+        String path = uri.getPath() == null ? "" : uri.getPath();
+        int start = path.startsWith("/") ? 1 : 0;
+        int end = path.indexOf('/', start);
+        return end < 0 ? path.substring(start) : path.substring(start, end);
+    }
+
+    /**
+     * The entries of one type, split by whether they have an ETag, since only those outlive their TTL.
+     */
+    private static class Caches {
+        private final Cache<URI, Entry> tagged;
+        private final Cache<URI, Entry> untagged;
+        private final long ttlNanos;
+
+        private Caches(String type, CacheConfigurationProperties.Policy policy) {
+            this.tagged = newCache(type, policy, policy.getTtlSeconds() + policy.getRevalidateSeconds());
+            this.untagged = newCache(type, policy, policy.getTtlSeconds());
+            this.ttlNanos = TimeUnit.SECONDS.toNanos(policy.getTtlSeconds());
+        }
+
+        private static Cache<URI, Entry> newCache(String type, CacheConfigurationProperties.Policy policy, long
+                expirySeconds) {
+            return Caffeine.newBuilder()
+                    .maximumSize(policy.getMaxSize())
+                    .expireAfterWrite(expirySeconds, TimeUnit.SECONDS)
+                    .<URI, Entry>removalListener((uri, entry, cause) -> {
+                        if (cause.wasEvicted()) {
+                            evictions.labels(type).inc();
+                        }
+                    })
+                    .build();
+        }
+
+        private Entry get(URI uri) {
+            Entry entry = tagged.getIfPresent(uri);
+            return entry != null ? entry : untagged.getIfPresent(uri);
+        }
+
+        private void put(URI uri, Resource<?> resource, String etag) {
+            Entry entry = new Entry(resource, etag, System.nanoTime() + ttlNanos);
+            if (etag != null) {
+                tagged.put(uri, entry);
+                untagged.invalidate(uri);
+            } else {
+                untagged.put(uri, entry);
+                tagged.invalidate(uri);
+            }
+        }
+    }
+
+    public static class Entry {
+        private final Resource<?> resource;
+        private final String etag;
+        private final long freshUntil;
+
+        private Entry(Resource<?> resource, String etag, long freshUntil) {
+            this.resource = resource;
+            this.etag = etag;
+            this.freshUntil = freshUntil;
+        }
+
+        public boolean isFresh() {
+            return System.nanoTime() - freshUntil < 0;
+        }
+
+        public Resource<?> getResource() {
+            return resource;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package works.weave.socks.orders.services;
+
+import io.prometheus.client.Counter;
+import io.prometheus.client.Histogram;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import works.weave.socks.orders.config.OrdersConfigurationProperties;
+import works.weave.socks.orders.config.OutboxConfigurationProperties;
+import works.weave.socks.orders.entities.CustomerOrder;
+import works.weave.socks.orders.entities.Shipment;
+import works.weave.socks.orders.entities.ShipmentDispatch;
+
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+import static org.springframework.data.mongodb.core.query.Query.query;
+
+/**
+ * Sends the shipping requests of saved orders to the shipping service and records the returned {@link Shipment} on
+ * each order. Due requests are claimed in batches under a lease, so that several instances can dispatch side by side
+ * and a request claimed by an instance that died is picked up again once the lease runs out. A request the shipping
+ * service never saw, because its circuit breaker or bulkhead turned it away, is retried without using up an attempt;
+ * one that has used up its attempts is marked failed and stays so until {@link #redriveFailed(String)} puts it back.
+ */
+@Component
+public class ShipmentDispatcher {
+    static final Counter dispatches = Counter.build()
+            .name("shipping_outbox_dispatches_total")
+            .help("Shipping requests sent from the outbox, by outcome: shipped, retry, rejected or failed.")
+            .labelNames("result")
+            .register();
+
+    static final Histogram delay = Histogram.build()
+            .name("shipping_outbox_delay_seconds")
+            .help("Time from an order being placed to its shipment being recorded.")
+            .buckets(0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10, 30, 60, 300)
+            .register();
+
+    private static final ParameterizedTypeReference<Shipment> SHIPMENT_TYPE = new
+            ParameterizedTypeReference<Shipment>() {
+    };
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    private final OutboxConfigurationProperties config;
+    private final OrdersConfigurationProperties ordersConfig;
+    private final MongoOperations mongoOperations;
+    private final AsyncGetService asyncGetService;
+    private final ScheduledExecutorService executor;
+
+    @Autowired
+    public ShipmentDispatcher(OutboxConfigurationProperties config, OrdersConfigurationProperties ordersConfig,
+                              MongoOperations mongoOperations, AsyncGetService asyncGetService) {
+        this.config = config;
+        this.ordersConfig = ordersConfig;
+        this.mongoOperations = mongoOperations;
+        this.asyncGetService = asyncGetService;
+        this.executor = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory
+                ("shipment-dispatcher-"));
+        if (config.isEnabled()) {
+            executor.scheduleWithFixedDelay(this::dispatch, config.getPollIntervalMillis(), config
+                    .getPollIntervalMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    void dispatch() {
+        try {
+            List<CustomerOrder> claimed;
+            do {
+                claimed = claim();
+                List<CompletableFuture<Void>> sent = new ArrayList<>();
+                for (CustomerOrder order : claimed) {
+                    sent.add(send(order));
+                }
+                CompletableFuture.allOf(sent.toArray(new CompletableFuture<?>[sent.size()])).join();
+            } while (claimed.size() == config.getBatchSize());
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to dispatch shipping requests", e);
+        }
+    }
+
+    private List<CustomerOrder> claim() {
+        Date now = new Date();
+        Query dueQuery = new Query(due(now)).limit(config.getBatchSize());
+        dueQuery.fields().include("_id");
+        List<String> ids = mongoOperations.find(dueQuery, CustomerOrder.class).stream()
+                .map(CustomerOrder::getId)
+                .collect(Collectors.toList());
+        if (ids.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Only the requests still due when the update runs are claimed; another instance may have taken the rest
+        String claim = UUID.randomUUID().toString();
+        mongoOperations.updateMulti(new Query(due(now).and("id").in(ids)), new Update()
+                .set("shipmentDispatch.claim", claim)
+                .set("shipmentDispatch.nextAttempt", new Date(now.getTime() + TimeUnit.SECONDS.toMillis(config
+                        .getLeaseSeconds())))
+                .inc("shipmentDispatch.attempts", 1), CustomerOrder.class);
+        return mongoOperations.find(query(where("id").in(ids).and("shipmentDispatch.claim").is(claim)),
+                CustomerOrder.class);
+    }
+
+    private static Criteria due(Date now) {
+        return where("shipmentDispatch.status").is(ShipmentDispatch.PENDING).and("shipmentDispatch.nextAttempt")
+                .lte(now);
+    }
+
+    private CompletableFuture<Void> send(CustomerOrder order) {
+        Deadline deadline = Deadline.after(config.getTimeoutSeconds(), TimeUnit.SECONDS);
+        // The order id doubles as the shipment id, so a request sent again after a lost reply can be recognised
+        Shipment request = new Shipment(order.getId(), order.getCustomerId());
+        return asyncGetService.postResource(ordersConfig.getShippingUri(), request, SHIPMENT_TYPE, deadline)
+                .handle((shipment, e) -> {
+            deadline.cancel();
+            if (e == null) {
+                shipped(order, shipment);
+            } else {
+                failed(order, e instanceof CompletionException && e.getCause() != null ? e.getCause() : e);
+            }
+            return null;
+        });
+    }
+
+    private void shipped(CustomerOrder order, Shipment shipment) {
+        LOG.debug("Shipped order " + order.getId() + ": " + shipment);
+        mongoOperations.updateFirst(claimed(order), new Update()
+                .set("shipment", shipment)
+                .set("shipmentDispatch.status", ShipmentDispatch.SHIPPED)
+                .unset("shipmentDispatch.claim"), CustomerOrder.class);
+        dispatches.labels(ShipmentDispatch.SHIPPED).inc();
+        if (order.getDate() != null) {
+            delay.observe((System.currentTimeMillis() - order.getDate().getTime()) / 1000.0);
+        }
+    }
+
+    private void failed(CustomerOrder order, Throwable e) {
+        int attempts = order.getShipmentDispatch().getAttempts();
+        Update update = new Update()
+                .set("shipmentDispatch.lastError", String.valueOf(e.getMessage()))
+                .unset("shipmentDispatch.claim");
+        if (e instanceof CircuitBreakerOpenException || e instanceof RejectedExecutionException) {
+            // Turned away before reaching the shipping service, so the claim's attempt is handed back
+            LOG.debug("Shipping order " + order.getId() + " deferred: " + e.getMessage());
+            update.inc("shipmentDispatch.attempts", -1)
+                    .set("shipmentDispatch.nextAttempt", new Date(System.currentTimeMillis() + backoff(attempts)));
+            dispatches.labels("rejected").inc();
+        } else if (attempts >= config.getMaxAttempts()) {
+            LOG.error("Giving up shipping order " + order.getId() + " after " + attempts + " attempts", e);
+            update.set("shipmentDispatch.status", ShipmentDispatch.FAILED);
+            dispatches.labels(ShipmentDispatch.FAILED).inc();
+        } else {
+            LOG.warn("Unable to ship order " + order.getId() + ", attempt " + attempts + ": " + e.getMessage());
+            update.set("shipmentDispatch.nextAttempt", new Date(System.currentTimeMillis() + backoff(attempts)));
+            dispatches.labels("retry").inc();
+        }
+        mongoOperations.updateFirst(claimed(order), update, CustomerOrder.class);
+    }
+
+    long backoff(int attempts) {
+        long backoff = config.getRetryBackoffMillis() << Math.min(attempts - 1, 20);
+        return Math.min(backoff, config.getMaxRetryBackoffMillis());
+    }
+
+    private static Query claimed(CustomerOrder order) {
+        return query(where("id").is(order.getId()).and("shipmentDispatch.claim").is(order.getShipmentDispatch()
+                .getClaim()));
+    }
+
+    /**
+     * Puts failed shipping requests back to be dispatched straight away with a fresh set of attempts: the one for
+     * the given order, or all of them if it is null. Returns how many were put back.
+     */
+    public long redriveFailed(String orderId) {
+        Criteria failed = where("shipmentDispatch.status").is(ShipmentDispatch.FAILED);
+        if (orderId != null) {
+            failed = failed.and("id").is(orderId);
+        }
+        long redriven = mongoOperations.updateMulti(new Query(failed), new Update()
+                .set("shipmentDispatch.status", ShipmentDispatch.PENDING)
+                .set("shipmentDispatch.attempts", 0)
+                .set("shipmentDispatch.nextAttempt", new Date()), CustomerOrder.class).getN();
+        LOG.info("Re-drove " + redriven + " failed shipping requests");
+        return redriven;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -0,0 +1,120 @@
+package works.weave.socks.orders.services;
+
+import io.prometheus.client.Counter;
+import works.weave.socks.orders.config.Downstream;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+/**
+ * Shares one call between everyone who asks for the same key while it is in flight. The call runs under a deadline
+ * of its own, with the time the first caller had left, and is aborted early only once every caller waiting on it has
+ * given up; one caller's order failing does not fail the others'.
+ */
+class SingleFlight<K> {
+    static final Counter requests = Counter.build()
+            .name("single_flight_requests_total")
+            .help("Downstream calls by whether they went out (leader) or joined one already in flight (coalesced).")
+            .labelNames("downstream", "result")
+            .register();
+
+    private final ConcurrentMap<K, Flight<?>> flights = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    <T> CompletableFuture<T> submit(K key, Downstream downstream, Deadline deadline,
+                                    Function<Deadline, CompletableFuture<T>> call) {
+        while (true) {
+            Flight<?> flight = flights.get(key);
+            boolean leader = false;
+            if (flight == null) {
+                Flight<T> created = new Flight<>();
+                flight = flights.putIfAbsent(key, created);
+                if (flight == null) {
+                    flight = created;
+                    leader = true;
+                }
+            }
+            if (flight.join(deadline)) {
+                Flight<T> joined = (Flight<T>) flight;
+                if (leader) {
+                    requests.labels(downstream.getName(), "leader").inc();
+                    Deadline shared = joined.start(deadline.remainingMillis());
+                    attempt(call, shared).whenComplete((value, e) -> {
+                        flights.remove(key, joined);
+                        shared.cancel();
+                        if (e == null) {
+                            joined.result.complete(value);
+                        } else {
+                            joined.result.completeExceptionally(e);
+                        }
+                    });
+                } else {
+                    requests.labels(downstream.getName(), "coalesced").inc();
+                }
+                // Each caller gets its own view, so none can complete the shared result for the others
+                return joined.result.thenApply(value -> value);
+            }
+            // Abandoned by everyone waiting on it, or our own deadline has already been cancelled
+            flights.remove(key, flight);
+            if (deadline.isExpired()) {
+                return failed(new DeadlineExceededException("Deadline exceeded"));
+            }
+        }
+    }
+
+    /**
+     * Runs the call, turning anything it throws into a failed future so that the flight always completes.
+     */
+    private static <T> CompletableFuture<T> attempt(Function<Deadline, CompletableFuture<T>> call, Deadline shared) {
+        try {
+            return call.apply(shared);
+        } catch (RuntimeException e) {
+            return failed(e);
+        }
+    }
+
+    private static <T> CompletableFuture<T> failed(Throwable e) {
+        CompletableFuture<T> failed = new CompletableFuture<>();
+        failed.completeExceptionally(e);
+        return failed;
+    }
+
+    private static class Flight<T> {
+        private final CompletableFuture<T> result = new CompletableFuture<>();
+        private Deadline deadline;
+        private int waiters;
+        private boolean abandoned;
+
+        /**
+         * Adds a caller, who leaves when its own deadline is cancelled. False if the flight was already abandoned.
+         */
+        private synchronized boolean join(Deadline caller) {
+            if (abandoned) {
+                return false;
+            }
+            waiters++;
+            caller.onCancel(this::leave);
+            return !abandoned;
+        }
+
+        private synchronized Deadline start(long timeoutMillis) {
+            deadline = Deadline.after(timeoutMillis, TimeUnit.MILLISECONDS);
+            if (abandoned) {
+                deadline.cancel();
+            }
+            return deadline;
+        }
+
+        private synchronized void leave() {
+            if (--waiters == 0 && !result.isDone()) {
+                abandoned = true;
+                if (deadline != null) {
+                    deadline.cancel();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package works.weave.socks.orders.services;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import io.prometheus.client.Counter;
+import io.prometheus.client.Gauge;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import works.weave.socks.orders.config.WriteBehindConfigurationProperties;
+import works.weave.socks.orders.entities.CustomerOrder;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Acknowledges an order as soon as it is durable in the local {@link OrderJournal} and drains the journal to Mongo in
+ * bulk inserts in the background, so Mongo latency stays off the order path. Orders the previous run journalled but
+ * did not drain are drained on startup. An order that is already in Mongo, because a drain was interrupted before
+ * its checkpoint, is skipped.
+ */
+@Service
+@ConditionalOnProperty(prefix = "orders.write-behind", name = "enabled", havingValue = "true")
+public class WriteBehindOrderPersister implements OrderPersister {
+    static final Gauge undrained = Gauge.build()
+            .name("order_journal_undrained_orders")
+            .help("Orders in the journal not yet written to Mongo.")
+            .register();
+
+    static final Counter drained = Counter.build()
+            .name("order_journal_drained_total")
+            .help("Orders written from the journal to Mongo.")
+            .register();
+
+    static final Counter drainFailures = Counter.build()
+            .name("order_journal_drain_failures_total")
+            .help("Failed attempts to write a batch of journalled orders to Mongo.")
+            .register();
+
+    private static final int DUPLICATE_KEY = 11000;
+
+    private final Logger LOG = LoggerFactory.getLogger(getClass());
+
+    private final MongoOperations mongoOperations;
+    private final OrderJournal journal;
+    private final int batchSize;
+    private final ScheduledExecutorService drainer;
+    private final ExecutorService completions;
+
+    @Autowired
+    public WriteBehindOrderPersister(WriteBehindConfigurationProperties config, MongoOperations mongoOperations)
+            throws IOException {
+        this.mongoOperations = mongoOperations;
+        this.batchSize = config.getDrainBatchSize();
+        if (config.getDirectory() == null || config.getDirectory().isEmpty()) {
+            // A default such as the temporary directory would not survive the container, and nor would the orders
+            throw new IllegalStateException("orders.write-behind.directory must be set to a directory that " +
+                    "survives restarts when write-behind is enabled");
+        }
+        CustomizableThreadFactory completionThreads = new CustomizableThreadFactory("order-journal-completion-");
+        completionThreads.setDaemon(true);
+        this.completions = Executors.newCachedThreadPool(completionThreads);
+        this.journal = new OrderJournal(Paths.get(config.getDirectory()), config.getSegmentSizeMb() * 1024 * 1024,
+                completions);
+        if (journal.recovered() > 0) {
+            LOG.info("Replaying " + journal.recovered() + " orders from the journal in " + config.getDirectory());
+        }
+        undrained.set(journal.recovered());
+        this.drainer = Executors.newSingleThreadScheduledExecutor(new CustomizableThreadFactory("order-journal-" +
+                "drainer-"));
+        drainer.scheduleWithFixedDelay(this::drain, 0, config.getDrainIntervalMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CompletableFuture<CustomerOrder> save(CustomerOrder order) {
+        return append(order).thenApply(ignored -> order);
+    }
+
+    @Override
+    public CompletableFuture<List<CustomerOrder>> insert(List<CustomerOrder> orders) {
+        List<CompletableFuture<Void>> appended = new ArrayList<>();
+        for (CustomerOrder order : orders) {
+            appended.add(append(order));
+        }
+        return CompletableFuture.allOf(appended.toArray(new CompletableFuture<?>[appended.size()])).thenApply
+                (ignored -> orders);
+    }
+
+    private CompletableFuture<Void> append(CustomerOrder order) {
+        // The id is assigned here, since the order is acknowledged before Mongo sees it
+        if (order.getId() == null) {
+            order.setId(new ObjectId().toHexString());
+        }
+        // Journalled as the document Mongo will store, so nothing the API hides is lost
+        BasicDBObject document = new BasicDBObject();
+        mongoOperations.getConverter().write(order, document);
+        CompletableFuture<Void> appended = journal.append(document.toJson().getBytes(StandardCharsets.UTF_8));
+        undrained.inc();
+        return appended;
+    }
+
+    private void drain() {
+        try {
+            List<OrderJournal.Record> records;
+            do {
+                records = journal.read(batchSize);
+                if (records.isEmpty()) {
+                    return;
+                }
+                List<CustomerOrder> orders = new ArrayList<>(records.size());
+                for (OrderJournal.Record record : records) {
+                    BasicDBObject document = BasicDBObject.parse(new String(record.getPayload(), StandardCharsets
+                            .UTF_8));
+                    orders.add(mongoOperations.getConverter().read(CustomerOrder.class, document));
+                }
+                insert(orders, records);
+            } while (records.size() == batchSize);
+        } catch (IOException | RuntimeException e) {
+            drainFailures.inc();
+            LOG.warn("Unable to drain the order journal to Mongo, will retry", e);
+            journal.rewind();
+        }
+    }
+
+    private void insert(List<CustomerOrder> orders, List<OrderJournal.Record> records) throws IOException {
+        try {
+            mongoOperations.bulkOps(BulkOperations.BulkMode.UNORDERED, CustomerOrder.class).insert(orders).execute();
+        } catch (BulkOperationException e) {
+            for (BulkWriteError error : e.getErrors()) {
+                if (error.getCode() != DUPLICATE_KEY) {
+                    throw e;
+                }
+            }
+        }
+        journal.checkpoint(records.get(records.size() - 1));
+        undrained.dec(records.size());
+        drained.inc(records.size());
+    }
+
+    @PreDestroy
+    public void close() {
+        drainer.shutdown();
+        try {
+            drainer.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        journal.close();
+        // A last drain; whatever it misses is drained on the next start
+        drain();
+        completions.shutdown();
+    }
+}
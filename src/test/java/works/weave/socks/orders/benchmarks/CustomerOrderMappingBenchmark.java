@@ -0,0 +1,85 @@
+package works.weave.socks.orders.benchmarks;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.DefaultDBDecoder;
+import com.mongodb.MongoClient;
+import org.bson.BasicBSONEncoder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.data.mongodb.core.SimpleMongoDbFactory;
+import org.springframework.data.mongodb.core.convert.DefaultDbRefResolver;
+import org.springframework.data.mongodb.core.convert.MappingMongoConverter;
+import org.springframework.data.mongodb.core.mapping.MongoMappingContext;
+import works.weave.socks.orders.entities.CustomerOrder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mapping a CustomerOrder to and from its Mongo document, and encoding/decoding that document as BSON.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class CustomerOrderMappingBenchmark {
+    private MongoClient mongoClient;
+    private MappingMongoConverter converter;
+    private CustomerOrder order;
+    private DBObject document;
+    private byte[] bson;
+
+    @Setup
+    public void setUp() {
+        // Never connects: DBRefs are only resolved for non-empty reference lists, and the fixture has none.
+        mongoClient = new MongoClient();
+        MongoMappingContext mappingContext = new MongoMappingContext();
+        mappingContext.afterPropertiesSet();
+        converter = new MappingMongoConverter(new DefaultDbRefResolver(new SimpleMongoDbFactory(mongoClient,
+                "benchmark")), mappingContext);
+        converter.afterPropertiesSet();
+
+        order = StubDownstreams.customerOrder();
+        document = toDocument();
+        bson = new BasicBSONEncoder().encode(document);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mongoClient.close();
+    }
+
+    @Benchmark
+    public DBObject toDocument() {
+        BasicDBObject dbObject = new BasicDBObject();
+        converter.write(order, dbObject);
+        return dbObject;
+    }
+
+    @Benchmark
+    public CustomerOrder fromDocument() {
+        return converter.read(CustomerOrder.class, document);
+    }
+
+    @Benchmark
+    public byte[] encode() {
+        return new BasicBSONEncoder().encode(toDocument());
+    }
+
+    @Benchmark
+    public CustomerOrder decode() {
+        return converter.read(CustomerOrder.class, new DefaultDBDecoder().decode(bson, (DBCollection) null));
+    }
+}
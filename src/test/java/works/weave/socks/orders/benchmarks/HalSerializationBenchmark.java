@@ -0,0 +1,122 @@
+package works.weave.socks.orders.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.afterburner.AfterburnerModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.Resource;
+import org.springframework.hateoas.mvc.TypeReferences;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import works.weave.socks.orders.config.CachingJackson2HttpMessageConverter;
+import works.weave.socks.orders.entities.Address;
+import works.weave.socks.orders.entities.Card;
+import works.weave.socks.orders.entities.Customer;
+import works.weave.socks.orders.entities.Item;
+import works.weave.socks.orders.values.PaymentRequest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * (De)serialization of the downstream payloads through the HTTP message converter, as the RestTemplate performs it.
+ * Compares Spring's converter, which resolves the type and builds a reader or writer per message, with the caching
+ * converter, each with and without Afterburner; run with {@code -prof gc} for the allocation side.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class HalSerializationBenchmark {
+    private static final TypeReferences.ResourceType<Customer> CUSTOMER_TYPE = new TypeReferences
+            .ResourceType<Customer>() {
+    };
+    private static final TypeReferences.ResourceType<Address> ADDRESS_TYPE = new TypeReferences
+            .ResourceType<Address>() {
+    };
+    private static final TypeReferences.ResourceType<Card> CARD_TYPE = new TypeReferences.ResourceType<Card>() {
+    };
+    private static final ParameterizedTypeReference<List<Item>> ITEMS_TYPE = new
+            ParameterizedTypeReference<List<Item>>() {
+    };
+
+    @Param({"spring", "caching"})
+    public String converter;
+
+    @Param({"false", "true"})
+    public boolean afterburner;
+
+    private MappingJackson2HttpMessageConverter messageConverter;
+    private byte[] customer;
+    private byte[] address;
+    private byte[] card;
+    private byte[] items;
+    private PaymentRequest paymentRequest;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper objectMapper = StubDownstreams.halObjectMapper();
+        if (afterburner) {
+            objectMapper.registerModule(new AfterburnerModule());
+        }
+        messageConverter = converter.equals("caching") ? new CachingJackson2HttpMessageConverter(objectMapper) :
+                new MappingJackson2HttpMessageConverter(objectMapper);
+        messageConverter.setSupportedMediaTypes(Arrays.asList(MediaTypes.HAL_JSON, MediaType.APPLICATION_JSON));
+        customer = StubDownstreams.CUSTOMER_JSON.getBytes(StandardCharsets.UTF_8);
+        address = StubDownstreams.ADDRESS_JSON.getBytes(StandardCharsets.UTF_8);
+        card = StubDownstreams.CARD_JSON.getBytes(StandardCharsets.UTF_8);
+        items = StubDownstreams.ITEMS_JSON.getBytes(StandardCharsets.UTF_8);
+        paymentRequest = new PaymentRequest(StubDownstreams.customerOrder().getAddress(), StubDownstreams
+                .customerOrder().getCard(), StubDownstreams.customerOrder().getCustomer(), 265.99F);
+    }
+
+    @Benchmark
+    public Resource<Customer> readCustomer() throws IOException {
+        return read(customer, CUSTOMER_TYPE);
+    }
+
+    @Benchmark
+    public Resource<Address> readAddress() throws IOException {
+        return read(address, ADDRESS_TYPE);
+    }
+
+    @Benchmark
+    public Resource<Card> readCard() throws IOException {
+        return read(card, CARD_TYPE);
+    }
+
+    @Benchmark
+    public List<Item> readItems() throws IOException {
+        return read(items, ITEMS_TYPE);
+    }
+
+    @Benchmark
+    public byte[] writePaymentRequest() throws IOException {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        messageConverter.write(paymentRequest, MediaType.APPLICATION_JSON, message);
+        return message.getBodyAsBytes();
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T read(byte[] json, ParameterizedTypeReference<T> type) throws IOException {
+        return (T) messageConverter.read(type.getType(), null, new MockHttpInputMessage(json));
+    }
+}
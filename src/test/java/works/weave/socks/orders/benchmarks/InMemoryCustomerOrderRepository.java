@@ -0,0 +1,245 @@
+package works.weave.socks.orders.benchmarks;
+
+import org.bson.types.ObjectId;
+import org.springframework.beans.DirectFieldAccessor;
+import org.springframework.data.domain.Example;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.util.ObjectUtils;
+import org.springframework.util.ReflectionUtils;
+import works.weave.socks.orders.entities.CustomerOrder;
+import works.weave.socks.orders.repositories.CustomerOrderRepository;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * The order repository backed by a map, so that benchmarks measure the orders code rather than Mongo. Every method
+ * works as it does against Mongo, if not as fast: queries scan the map, and examples match on equal field values,
+ * ignoring those left null.
+ */
+public class InMemoryCustomerOrderRepository implements CustomerOrderRepository {
+    private final Map<String, CustomerOrder> orders = new ConcurrentHashMap<>();
+
+    @Override
+    public <S extends CustomerOrder> S save(S order) {
+        if (order.getId() == null) {
+            order.setId(new ObjectId().toHexString());
+        }
+        orders.put(order.getId(), order);
+        return order;
+    }
+
+    @Override
+    public <S extends CustomerOrder> List<S> save(Iterable<S> orders) {
+        List<S> saved = new ArrayList<>();
+        orders.forEach(order -> saved.add(save(order)));
+        return saved;
+    }
+
+    @Override
+    public <S extends CustomerOrder> S insert(S order) {
+        if (order.getId() != null && orders.containsKey(order.getId())) {
+            throw new IllegalStateException("Duplicate order id: " + order.getId());
+        }
+        return save(order);
+    }
+
+    @Override
+    public <S extends CustomerOrder> List<S> insert(Iterable<S> orders) {
+        List<S> inserted = new ArrayList<>();
+        orders.forEach(order -> inserted.add(insert(order)));
+        return inserted;
+    }
+
+    @Override
+    public CustomerOrder findOne(String id) {
+        return orders.get(id);
+    }
+
+    @Override
+    public boolean exists(String id) {
+        return orders.containsKey(id);
+    }
+
+    @Override
+    public List<CustomerOrder> findAll() {
+        return new ArrayList<>(orders.values());
+    }
+
+    @Override
+    public Iterable<CustomerOrder> findAll(Iterable<String> ids) {
+        return StreamSupport.stream(ids.spliterator(), false)
+                .map(orders::get)
+                .filter(order -> order != null)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<CustomerOrder> findAll(Sort sort) {
+        return sorted(orders.values().stream(), sort).collect(Collectors.toList());
+    }
+
+    @Override
+    public Page<CustomerOrder> findAll(Pageable pageable) {
+        return page(orders.values().stream(), pageable);
+    }
+
+    @Override
+    public long count() {
+        return orders.size();
+    }
+
+    @Override
+    public void delete(String id) {
+        orders.remove(id);
+    }
+
+    @Override
+    public void delete(CustomerOrder order) {
+        orders.remove(order.getId());
+    }
+
+    @Override
+    public void delete(Iterable<? extends CustomerOrder> orders) {
+        orders.forEach(this::delete);
+    }
+
+    @Override
+    public void deleteAll() {
+        orders.clear();
+    }
+
+    @Override
+    public <S extends CustomerOrder> S findOne(Example<S> example) {
+        return matching(example).findFirst().orElse(null);
+    }
+
+    @Override
+    public <S extends CustomerOrder> List<S> findAll(Example<S> example) {
+        return matching(example).collect(Collectors.toList());
+    }
+
+    @Override
+    public <S extends CustomerOrder> List<S> findAll(Example<S> example, Sort sort) {
+        return sorted(matching(example), sort).collect(Collectors.toList());
+    }
+
+    @Override
+    public <S extends CustomerOrder> Page<S> findAll(Example<S> example, Pageable pageable) {
+        return page(matching(example), pageable);
+    }
+
+    @Override
+    public <S extends CustomerOrder> long count(Example<S> example) {
+        return matching(example).count();
+    }
+
+    @Override
+    public <S extends CustomerOrder> boolean exists(Example<S> example) {
+        return matching(example).findAny().isPresent();
+    }
+
+    @Override
+    public List<CustomerOrder> findByCustomerId(String id) {
+        return orders.values().stream()
+                .filter(order -> id.equals(order.getCustomerId()))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<CustomerOrder> findPageByCustomerId(String customerId, Date afterDate, String afterId, int limit) {
+        return orders.values().stream()
+                .filter(order -> customerId.equals(order.getCustomerId()))
+                .filter(order -> afterDate == null || afterId == null || order.getDate().before(afterDate) || order
+                        .getDate().equals(afterDate) && order.getId().compareTo(afterId) < 0)
+                .sorted(Comparator.comparing(CustomerOrder::getDate).thenComparing(CustomerOrder::getId).reversed())
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public CloseableIterator<CustomerOrder> streamOrders(String customerId, Date from, Date to) {
+        Iterator<CustomerOrder> matching = orders.values().stream()
+                .filter(order -> customerId == null || customerId.equals(order.getCustomerId()))
+                .filter(order -> from == null || !order.getDate().before(from))
+                .filter(order -> to == null || order.getDate().before(to))
+                .collect(Collectors.toList())
+                .iterator();
+        return new CloseableIterator<CustomerOrder>() {
+            @Override
+            public boolean hasNext() {
+                return matching.hasNext();
+            }
+
+            @Override
+            public CustomerOrder next() {
+                return matching.next();
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+    }
+
+    @SuppressWarnings("unchecked")
+    private <S extends CustomerOrder> Stream<S> matching(Example<S> example) {
+        S probe = example.getProbe();
+        List<Field> fields = new ArrayList<>();
+        ReflectionUtils.doWithFields(probe.getClass(), fields::add, field -> !Modifier.isStatic(field.getModifiers()));
+        DirectFieldAccessor expected = new DirectFieldAccessor(probe);
+        return orders.values().stream()
+                .filter(order -> example.getProbeType().isInstance(order))
+                .filter(order -> {
+                    DirectFieldAccessor actual = new DirectFieldAccessor(order);
+                    for (Field field : fields) {
+                        Object value = expected.getPropertyValue(field.getName());
+                        if (value != null && !ObjectUtils.nullSafeEquals(value, actual.getPropertyValue(field
+                                .getName()))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                })
+                .map(order -> (S) order);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <S extends CustomerOrder> Stream<S> sorted(Stream<S> orders, Sort sort) {
+        if (sort == null) {
+            return orders;
+        }
+        Comparator<S> comparator = null;
+        for (Sort.Order order : sort) {
+            Comparator<S> byProperty = Comparator.comparing(customerOrder -> (Comparable<Object>) new
+                    DirectFieldAccessor(customerOrder).getPropertyValue(order.getProperty()), Comparator
+                    .nullsFirst(Comparator.naturalOrder()));
+            if (!order.isAscending()) {
+                byProperty = byProperty.reversed();
+            }
+            comparator = comparator == null ? byProperty : comparator.thenComparing(byProperty);
+        }
+        return comparator == null ? orders : orders.sorted(comparator);
+    }
+
+    private static <S extends CustomerOrder> Page<S> page(Stream<S> orders, Pageable pageable) {
+        List<S> all = sorted(orders, pageable.getSort()).collect(Collectors.toList());
+        int from = Math.min(pageable.getOffset(), all.size());
+        int to = Math.min(from + pageable.getPageSize(), all.size());
+        return new PageImpl<>(new ArrayList<>(all.subList(from, to)), pageable, all.size());
+    }
+}
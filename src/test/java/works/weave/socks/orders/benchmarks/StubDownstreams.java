@@ -0,0 +1,210 @@
+package works.weave.socks.orders.benchmarks;
+
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.prometheus.client.CollectorRegistry;
+import org.bson.types.ObjectId;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.hateoas.hal.Jackson2HalModule;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.client.RestTemplate;
+import works.weave.socks.orders.config.BulkheadConfigurationProperties;
+import works.weave.socks.orders.config.CacheConfigurationProperties;
+import works.weave.socks.orders.config.CircuitBreakerConfigurationProperties;
+import works.weave.socks.orders.config.HedgingConfigurationProperties;
+import works.weave.socks.orders.config.HttpClientConfigurationProperties;
+import works.weave.socks.orders.config.OrdersConfigurationProperties;
+import works.weave.socks.orders.config.RestProxyTemplate;
+import works.weave.socks.orders.entities.Address;
+import works.weave.socks.orders.entities.Card;
+import works.weave.socks.orders.entities.Customer;
+import works.weave.socks.orders.entities.CustomerOrder;
+import works.weave.socks.orders.entities.Item;
+import works.weave.socks.orders.entities.Shipment;
+import works.weave.socks.orders.repositories.CustomerOrderRepository;
+import works.weave.socks.orders.resources.NewOrderResource;
+import works.weave.socks.orders.services.AsyncGetService;
+import works.weave.socks.orders.services.Bulkheads;
+import works.weave.socks.orders.services.CircuitBreakers;
+import works.weave.socks.orders.services.Hedging;
+import works.weave.socks.orders.services.ResourceCache;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * In-process stand-ins for the user, cart, payment and shipping services, serving canned payloads over loopback HTTP,
+ * plus the wiring needed to drive the orders code against them without a Spring context.
+ */
+public class StubDownstreams {
+    public static final String CUSTOMER_ID = "57a98d98e4b00679b4a830af";
+
+    public static final String CUSTOMER_JSON = "{\"firstName\":\"User\",\"lastName\":\"Name\",\"username\":\"user\"," +
+            "\"id\":\"" + CUSTOMER_ID + "\",\"_links\":{\"self\":{\"href\":\"http://user/customers/" + CUSTOMER_ID +
+            "\"},\"customer\":{\"href\":\"http://user/customers/" + CUSTOMER_ID + "\"}}}";
+    public static final String ADDRESS_JSON = "{\"number\":\"246\",\"street\":\"Whitelees Road\",\"city\":\"Glasgow\"," +
+            "\"postcode\":\"G67 3DL\",\"country\":\"United Kingdom\",\"id\":\"57a98d98e4b00679b4a830ad\"," +
+            "\"_links\":{\"self\":{\"href\":\"http://user/addresses/57a98d98e4b00679b4a830ad\"}}}";
+    public static final String CARD_JSON = "{\"longNum\":\"5953580604169678\",\"expires\":\"08/19\",\"ccv\":\"678\"," +
+            "\"id\":\"57a98d98e4b00679b4a830ae\",\"_links\":{\"self\":{\"href\":\"http://user/cards/" +
+            "57a98d98e4b00679b4a830ae\"}}}";
+    public static final String ITEMS_JSON = "[{\"id\":\"579f227698689ebf2bf1cd31\",\"itemId\":" +
+            "\"819e1fbf-8b7e-4f6d-811f-693534916a8b\",\"quantity\":2,\"unitPrice\":99.0},{\"id\":" +
+            "\"579f22ac98689ebf2bf1cd32\",\"itemId\":\"3395a43e-2d88-40de-b95f-e00e1502085b\",\"quantity\":1," +
+            "\"unitPrice\":18.0},{\"id\":\"579f22ac98689ebf2bf1cd33\",\"itemId\":" +
+            "\"510a0d7e-8e83-4193-b483-e27e09ddc34d\",\"quantity\":3,\"unitPrice\":15.0}]";
+    public static final String PAYMENT_JSON = "{\"authorised\":true,\"message\":\"Payment authorised\"}";
+    public static final String SHIPMENT_JSON = "{\"id\":\"b0f1bd4e-2e3a-4c07-8a59-1e0d8f8fb4a1\",\"name\":\"" +
+            CUSTOMER_ID + "\"}";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private Bulkheads bulkheads;
+    private CircuitBreakers circuitBreakers;
+    private RestProxyTemplate restProxyTemplate;
+
+    private StubDownstreams(HttpServer server, ExecutorService executor) {
+        this.server = server;
+        this.executor = executor;
+    }
+
+    public static StubDownstreams start() throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        ExecutorService executor = Executors.newFixedThreadPool(16);
+        server.setExecutor(executor);
+        server.createContext("/customers/", exchange -> respond(exchange, MediaTypes.HAL_JSON_VALUE, CUSTOMER_JSON));
+        server.createContext("/addresses/", exchange -> respond(exchange, MediaTypes.HAL_JSON_VALUE, ADDRESS_JSON));
+        server.createContext("/cards/", exchange -> respond(exchange, MediaTypes.HAL_JSON_VALUE, CARD_JSON));
+        server.createContext("/carts/", exchange -> respond(exchange, "application/json", ITEMS_JSON));
+        server.createContext("/paymentAuth", exchange -> respond(exchange, "application/json", PAYMENT_JSON));
+        server.createContext("/shipping", exchange -> respond(exchange, "application/json", SHIPMENT_JSON));
+        server.start();
+        return new StubDownstreams(server, executor);
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+        if (restProxyTemplate != null) {
+            restProxyTemplate.close();
+        }
+        if (bulkheads != null) {
+            bulkheads.shutdown();
+            CollectorRegistry.defaultRegistry.unregister(bulkheads);
+        }
+        if (circuitBreakers != null) {
+            CollectorRegistry.defaultRegistry.unregister(circuitBreakers);
+        }
+    }
+
+    public URI uri(String path) {
+        return URI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+
+    public NewOrderResource newOrderResource() {
+        NewOrderResource order = new NewOrderResource();
+        order.customer = uri("/customers/" + CUSTOMER_ID);
+        order.address = uri("/addresses/57a98d98e4b00679b4a830ad");
+        order.card = uri("/cards/57a98d98e4b00679b4a830ae");
+        order.items = uri("/carts/" + CUSTOMER_ID + "/items");
+        return order;
+    }
+
+    public OrdersConfigurationProperties ordersConfiguration() {
+        return new OrdersConfigurationProperties() {
+            @Override
+            public URI getPaymentUri() {
+                return uri("/paymentAuth");
+            }
+
+            @Override
+            public URI getShippingUri() {
+                return uri("/shipping");
+            }
+        };
+    }
+
+    /**
+     * An {@link AsyncGetService} wired as the application context would wire it, including the HAL converter that
+     * Spring HATEOAS adds to the shared RestTemplate.
+     */
+    public AsyncGetService asyncGetService() {
+        RestTemplate restTemplate = new RestTemplate();
+        restTemplate.getMessageConverters().add(0, halConverter());
+        restProxyTemplate = new RestProxyTemplate();
+        ReflectionTestUtils.setField(restProxyTemplate, "restTemplate", restTemplate);
+        ReflectionTestUtils.setField(restProxyTemplate, "clientConfig", new HttpClientConfigurationProperties());
+        ReflectionTestUtils.setField(restProxyTemplate, "host", "");
+        ReflectionTestUtils.setField(restProxyTemplate, "port", "");
+        restProxyTemplate.init();
+        bulkheads = new Bulkheads(new BulkheadConfigurationProperties());
+        circuitBreakers = new CircuitBreakers(new CircuitBreakerConfigurationProperties(), bulkheads);
+        return new AsyncGetService(restProxyTemplate, circuitBreakers, new ResourceCache(new
+                CacheConfigurationProperties()), new Hedging(new HedgingConfigurationProperties()));
+    }
+
+    /**
+     * A repository that keeps orders in a map.
+     */
+    public static CustomerOrderRepository inMemoryRepository() {
+        return new InMemoryCustomerOrderRepository();
+    }
+
+    public static ObjectMapper halObjectMapper() {
+        ObjectMapper objectMapper = new ObjectMapper();
+        objectMapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        objectMapper.registerModule(new Jackson2HalModule());
+        return objectMapper;
+    }
+
+    public static List<Item> items() {
+        return new ArrayList<>(Arrays.asList(
+                new Item("579f227698689ebf2bf1cd31", "819e1fbf-8b7e-4f6d-811f-693534916a8b", 2, 99.0F),
+                new Item("579f22ac98689ebf2bf1cd32", "3395a43e-2d88-40de-b95f-e00e1502085b", 1, 18.0F),
+                new Item("579f22ac98689ebf2bf1cd33", "510a0d7e-8e83-4193-b483-e27e09ddc34d", 3, 15.0F)));
+    }
+
+    public static CustomerOrder customerOrder() {
+        Customer customer = new Customer(CUSTOMER_ID, "User", "Name", "user", new ArrayList<>(), new ArrayList<>());
+        Address address = new Address("57a98d98e4b00679b4a830ad", "246", "Whitelees Road", "Glasgow", "G67 3DL",
+                "United Kingdom");
+        Card card = new Card("57a98d98e4b00679b4a830ae", "5953580604169678", "08/19", "678");
+        return new CustomerOrder(new ObjectId().toHexString(), CUSTOMER_ID, customer, address, card, items(), new
+                Shipment(CUSTOMER_ID), Calendar.getInstance().getTime(), 265.99F);
+    }
+
+    private static MappingJackson2HttpMessageConverter halConverter() {
+        MappingJackson2HttpMessageConverter halConverter = new MappingJackson2HttpMessageConverter();
+        halConverter.setSupportedMediaTypes(Arrays.asList(MediaTypes.HAL_JSON));
+        halConverter.setObjectMapper(halObjectMapper());
+        return halConverter;
+    }
+
+    private static void respond(HttpExchange exchange, String contentType, String body) throws IOException {
+        try (InputStream request = exchange.getRequestBody()) {
+            byte[] buffer = new byte[4096];
+            while (request.read(buffer) != -1) {
+                // drain the request so the connection can be reused
+            }
+        }
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", contentType);
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream response = exchange.getResponseBody()) {
+            response.write(bytes);
+        }
+    }
+}
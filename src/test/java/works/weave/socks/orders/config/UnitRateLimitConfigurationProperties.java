@@ -0,0 +1,51 @@
+package works.weave.socks.orders.config;
+
+import org.junit.Test;
+import org.springframework.beans.MutablePropertyValues;
+import org.springframework.boot.bind.RelaxedDataBinder;
+
+import static org.junit.Assert.assertEquals;
+
+public class UnitRateLimitConfigurationProperties {
+    @Test
+    public void anEndpointLeftUnsetHasItsDefaults() {
+        RateLimitConfigurationProperties config = bind(new MutablePropertyValues());
+
+        assertEquals(1, config.getLimit(RateLimitConfigurationProperties.CREATE).getCustomer().getRatePerSecond(), 0);
+        assertEquals(5, config.getLimit(RateLimitConfigurationProperties.SEARCH).getCustomer().getRatePerSecond(), 0);
+        assertEquals(20, config.getLimit(RateLimitConfigurationProperties.SEARCH).getCustomer().getBurst());
+        assertEquals(5, config.getLimit(RateLimitConfigurationProperties.IDEMPOTENCY).getCustomer()
+                .getRatePerSecond(), 0);
+    }
+
+    @Test
+    public void overridingOneSettingKeepsTheOtherDefaults() {
+        MutablePropertyValues properties = new MutablePropertyValues();
+        properties.add("endpoints.search.client.rate-per-second", "50");
+        properties.add("endpoints.search.client.burst", "100");
+
+        RateLimitConfigurationProperties.Limit search = bind(properties).getLimit(RateLimitConfigurationProperties
+                .SEARCH);
+
+        assertEquals(50, search.getClient().getRatePerSecond(), 0);
+        assertEquals(5, search.getCustomer().getRatePerSecond(), 0);
+        assertEquals(20, search.getCustomer().getBurst());
+    }
+
+    @Test
+    public void anotherEndpointStartsFromTheGeneralDefaults() {
+        MutablePropertyValues properties = new MutablePropertyValues();
+        properties.add("endpoints.export.customer.burst", "3");
+
+        RateLimitConfigurationProperties.Limit export = bind(properties).getLimit("export");
+
+        assertEquals(1, export.getCustomer().getRatePerSecond(), 0);
+        assertEquals(3, export.getCustomer().getBurst());
+    }
+
+    private static RateLimitConfigurationProperties bind(MutablePropertyValues properties) {
+        RateLimitConfigurationProperties config = new RateLimitConfigurationProperties();
+        new RelaxedDataBinder(config).bind(properties);
+        return config;
+    }
+}
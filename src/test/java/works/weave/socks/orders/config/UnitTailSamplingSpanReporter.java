@@ -0,0 +1,171 @@
+package works.weave.socks.orders.config;
+
+import org.junit.Before;
+import org.junit.Test;
+import zipkin.Annotation;
+import zipkin.BinaryAnnotation;
+import zipkin.Constants;
+import zipkin.Endpoint;
+import zipkin.Span;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UnitTailSamplingSpanReporter {
+    private static final Endpoint ORDERS = Endpoint.create("orders", 127 << 24 | 1);
+    private static final long FAST_MICROS = TimeUnit.MILLISECONDS.toMicros(10);
+    private static final long SLOW_MICROS = TimeUnit.SECONDS.toMicros(2);
+
+    private final TraceSamplingConfigurationProperties config = new TraceSamplingConfigurationProperties();
+    private final List<Span> reported = new ArrayList<>();
+    private long nextId = 1;
+
+    @Before
+    public void configure() {
+        // No baseline, so only slow and failed requests are kept
+        config.setTracesPerSecond(0);
+    }
+
+    @Test
+    public void aFailedRequestIsSentWithEverySpanOfItsTrace() {
+        TailSamplingSpanReporter reporter = reporter();
+        Span child = child(1);
+        reporter.report(child);
+        assertTrue(reported.isEmpty());
+
+        Span server = server(1, "newOrder", FAST_MICROS, Constants.ERROR, "Payment declined");
+        reporter.report(server);
+
+        assertEquals(Arrays.asList(child, server), reported);
+    }
+
+    @Test
+    public void aServerErrorStatusCountsAsAFailure() {
+        TailSamplingSpanReporter reporter = reporter();
+
+        reporter.report(server(1, "newOrder", FAST_MICROS, "http.status_code", "503"));
+
+        assertEquals(1, reported.size());
+    }
+
+    @Test
+    public void aSlowRequestIsSent() {
+        TailSamplingSpanReporter reporter = reporter();
+        reporter.report(child(1));
+
+        reporter.report(server(1, "newOrder", SLOW_MICROS, null, null));
+
+        assertEquals(2, reported.size());
+    }
+
+    @Test
+    public void anUnremarkableRequestIsDroppedAlongWithItsLateSpans() {
+        TailSamplingSpanReporter reporter = reporter();
+        reporter.report(child(1));
+        reporter.report(server(1, "newOrder", FAST_MICROS, "http.status_code", "201"));
+
+        reporter.report(child(1));
+
+        assertTrue(reported.isEmpty());
+    }
+
+    @Test
+    public void lateSpansOfAKeptTraceAreSentStraightAway() {
+        TailSamplingSpanReporter reporter = reporter();
+        reporter.report(server(1, "newOrder", SLOW_MICROS, null, null));
+
+        Span late = child(1);
+        reporter.report(late);
+
+        assertEquals(late, reported.get(reported.size() - 1));
+        assertEquals(2, reported.size());
+    }
+
+    @Test
+    public void onlyTheConfiguredMethodsAreJudged() {
+        TailSamplingSpanReporter reporter = reporter();
+
+        reporter.report(server(1, "getOrders", SLOW_MICROS, Constants.ERROR, "Timed out"));
+
+        assertTrue(reported.isEmpty());
+    }
+
+    @Test
+    public void tracesAreKeptSeparately() {
+        TailSamplingSpanReporter reporter = reporter();
+        reporter.report(child(1));
+        reporter.report(child(2));
+
+        reporter.report(server(2, "newOrder", SLOW_MICROS, null, null));
+        reporter.report(server(1, "newOrder", FAST_MICROS, null, null));
+
+        assertEquals(2, reported.size());
+        assertTrue(reported.stream().allMatch(span -> span.traceId == 2));
+    }
+
+    @Test
+    public void spansBeyondTheLimitOfATraceAreDropped() {
+        config.setMaxSpansPerTrace(2);
+        TailSamplingSpanReporter reporter = reporter();
+        for (int i = 0; i < 5; i++) {
+            reporter.report(child(1));
+        }
+
+        reporter.report(server(1, "newOrder", SLOW_MICROS, null, null));
+
+        assertEquals(3, reported.size());
+    }
+
+    @Test
+    public void quietTrafficIsTracedInFull() {
+        config.setTracesPerSecond(100);
+        TailSamplingSpanReporter reporter = reporter();
+
+        for (long traceId = 1; traceId <= 3; traceId++) {
+            reporter.report(child(traceId));
+            reporter.report(server(traceId, "newOrder", FAST_MICROS, null, null));
+        }
+
+        assertEquals(6, reported.size());
+    }
+
+    @Test
+    public void theBaselineSamplerCanBeTurnedOff() {
+        assertFalse(new RateLimitingSampler(0).tryAcquire());
+        assertTrue(new RateLimitingSampler(1).tryAcquire());
+    }
+
+    private TailSamplingSpanReporter reporter() {
+        return new TailSamplingSpanReporter(reported::add, config);
+    }
+
+    private Span child(long traceId) {
+        return Span.builder()
+                .traceId(traceId)
+                .id(nextId++)
+                .name("get")
+                .addAnnotation(Annotation.create(1, Constants.CLIENT_SEND, ORDERS))
+                .addAnnotation(Annotation.create(2, Constants.CLIENT_RECV, ORDERS))
+                .build();
+    }
+
+    private Span server(long traceId, String method, long durationMicros, String tag, String value) {
+        Span.Builder span = Span.builder()
+                .traceId(traceId)
+                .id(nextId++)
+                .name("http:/orders")
+                .addAnnotation(Annotation.create(1000, Constants.SERVER_RECV, ORDERS))
+                .addAnnotation(Annotation.create(1000 + durationMicros, Constants.SERVER_SEND, ORDERS))
+                .addBinaryAnnotation(BinaryAnnotation.create("mvc.controller.method", method, ORDERS));
+        if (tag != null) {
+            span.addBinaryAnnotation(BinaryAnnotation.create(tag, value, ORDERS));
+        }
+        return span.build();
+    }
+}
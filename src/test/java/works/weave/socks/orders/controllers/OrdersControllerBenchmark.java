@@ -0,0 +1,90 @@
+package works.weave.socks.orders.controllers;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+import works.weave.socks.orders.benchmarks.StubDownstreams;
+import works.weave.socks.orders.config.RateLimitConfigurationProperties;
+import works.weave.socks.orders.entities.CustomerOrder;
+import works.weave.socks.orders.entities.Item;
+import works.weave.socks.orders.repositories.CustomerOrderRepository;
+import works.weave.socks.orders.resources.NewOrderResource;
+import works.weave.socks.orders.services.MongoOrderPersister;
+import works.weave.socks.orders.services.RateLimiter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The full order-creation path against in-process stub downstreams, and the order total on its own.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(1)
+public class OrdersControllerBenchmark {
+    private StubDownstreams downstreams;
+    private OrdersController controller;
+    private NewOrderResource newOrder;
+    private List<Item> items;
+
+    @Setup
+    public void setUp() throws IOException {
+        downstreams = StubDownstreams.start();
+        controller = new OrdersController();
+        ReflectionTestUtils.setField(controller, "config", downstreams.ordersConfiguration());
+        ReflectionTestUtils.setField(controller, "asyncGetService", downstreams.asyncGetService());
+        CustomerOrderRepository repository = StubDownstreams.inMemoryRepository();
+        ReflectionTestUtils.setField(controller, "customerOrderRepository", repository);
+        ReflectionTestUtils.setField(controller, "orderPersister", new MongoOrderPersister(repository));
+        ReflectionTestUtils.setField(controller, "rateLimiter", new RateLimiter(unlimited()));
+        ReflectionTestUtils.setField(controller, "timeout", 5L);
+        newOrder = downstreams.newOrderResource();
+        items = StubDownstreams.items();
+    }
+
+    private static RateLimitConfigurationProperties unlimited() {
+        // Every benchmarked order is for the same customer
+        RateLimitConfigurationProperties config = new RateLimitConfigurationProperties();
+        RateLimitConfigurationProperties.Limit create = new RateLimitConfigurationProperties.Limit();
+        create.setEnabled(false);
+        config.getEndpoints().put(RateLimitConfigurationProperties.CREATE, create);
+        return config;
+    }
+
+    @TearDown
+    public void tearDown() {
+        downstreams.stop();
+    }
+
+    @Benchmark
+    public CustomerOrder newOrder() throws Exception {
+        DeferredResult<CustomerOrder> result = controller.newOrder(newOrder, null);
+        CompletableFuture<Object> done = new CompletableFuture<>();
+        result.setResultHandler(done::complete);
+        Object value = done.get(5, TimeUnit.SECONDS);
+        if (value instanceof Throwable) {
+            throw new IllegalStateException((Throwable) value);
+        }
+        return (CustomerOrder) value;
+    }
+
+    @Benchmark
+    public float calculateTotal() {
+        return controller.calculateTotal(items);
+    }
+}
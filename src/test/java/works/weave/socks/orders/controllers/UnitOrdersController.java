@@ -0,0 +1,267 @@
+package works.weave.socks.orders.controllers;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.context.request.async.DeferredResult;
+import works.weave.socks.orders.benchmarks.InMemoryCustomerOrderRepository;
+import works.weave.socks.orders.benchmarks.StubDownstreams;
+import works.weave.socks.orders.config.RateLimitConfigurationProperties;
+import works.weave.socks.orders.entities.CustomerOrder;
+import works.weave.socks.orders.projections.OrderSummary;
+import works.weave.socks.orders.resources.BatchOrderResult;
+import works.weave.socks.orders.resources.NewOrderResource;
+import works.weave.socks.orders.resources.OrderHistoryPage;
+import works.weave.socks.orders.services.OrderPersister;
+import works.weave.socks.orders.services.RateLimiter;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UnitOrdersController {
+    private final InMemoryCustomerOrderRepository repository = new InMemoryCustomerOrderRepository();
+    private final OrdersController controller = new OrdersController();
+    private StubDownstreams downstreams;
+
+    @Before
+    public void setUp() throws IOException {
+        downstreams = StubDownstreams.start();
+        ReflectionTestUtils.setField(controller, "config", downstreams.ordersConfiguration());
+        ReflectionTestUtils.setField(controller, "asyncGetService", downstreams.asyncGetService());
+        ReflectionTestUtils.setField(controller, "customerOrderRepository", repository);
+        ReflectionTestUtils.setField(controller, "rateLimiter", new RateLimiter(new
+                RateLimitConfigurationProperties()));
+        ReflectionTestUtils.setField(controller, "timeout", 5L);
+        ReflectionTestUtils.setField(controller, "batchTimeout", 5L);
+        ReflectionTestUtils.setField(controller, "maxBatchSize", 10);
+        ReflectionTestUtils.setField(controller, "maxPageSize", 100);
+    }
+
+    @After
+    public void tearDown() {
+        downstreams.stop();
+    }
+
+    @Test
+    public void historyPagesThroughOrdersPlacedAtTheSameTime() {
+        Date earlier = new Date(1000000);
+        Date tied = new Date(2000000);
+        List<String> expected = Arrays.asList(
+                saved("5a0000000000000000000005", tied),
+                saved("5a0000000000000000000004", tied),
+                saved("5a0000000000000000000003", tied),
+                saved("5a0000000000000000000002", earlier),
+                saved("5a0000000000000000000001", earlier));
+
+        List<String> seen = new ArrayList<>();
+        String after = null;
+        int pages = 0;
+        do {
+            OrderHistoryPage<OrderSummary> page = controller.history(StubDownstreams.CUSTOMER_ID, after, 2);
+            page.getOrders().forEach(order -> seen.add(order.getId()));
+            after = page.getNext();
+            pages++;
+        } while (after != null);
+
+        assertEquals(expected, seen);
+        assertEquals(3, pages);
+    }
+
+    @Test
+    public void theLastPageHasNoCursor() {
+        saved("5a0000000000000000000001", new Date());
+
+        OrderHistoryPage<OrderSummary> page = controller.history(StubDownstreams.CUSTOMER_ID, null, 1);
+
+        assertEquals(1, page.getOrders().size());
+        assertNull(page.getNext());
+    }
+
+    @Test(expected = OrdersController.InvalidCursorException.class)
+    public void aCursorThatIsNotBase64IsRejected() {
+        controller.history(StubDownstreams.CUSTOMER_ID, "not a cursor!", 20);
+    }
+
+    @Test(expected = OrdersController.InvalidCursorException.class)
+    public void aCursorWithoutASeparatorIsRejected() {
+        controller.history(StubDownstreams.CUSTOMER_ID, cursor("1000"), 20);
+    }
+
+    @Test(expected = OrdersController.InvalidCursorException.class)
+    public void aCursorWithoutADateIsRejected() {
+        controller.history(StubDownstreams.CUSTOMER_ID, cursor("yesterday:5a0000000000000000000001"), 20);
+    }
+
+    @Test
+    public void aBatchReportsEachOrderOnItsOwn() throws Exception {
+        // The bulk insert fails, and so does the second order when it is saved on its own
+        AtomicInteger saves = new AtomicInteger();
+        ReflectionTestUtils.setField(controller, "orderPersister", new OrderPersister() {
+            @Override
+            public CompletableFuture<CustomerOrder> save(CustomerOrder order) {
+                if (saves.incrementAndGet() == 2) {
+                    throw new IllegalStateException("Write concern timed out");
+                }
+                return CompletableFuture.completedFuture(repository.save(order));
+            }
+
+            @Override
+            public CompletableFuture<List<CustomerOrder>> insert(List<CustomerOrder> orders) {
+                CompletableFuture<List<CustomerOrder>> failed = new CompletableFuture<>();
+                failed.completeExceptionally(new IllegalStateException("Bulk write failed"));
+                return failed;
+            }
+        });
+        NewOrderResource invalid = downstreams.newOrderResource();
+        invalid.card = null;
+
+        List<BatchOrderResult> results = await(controller.newOrders(Arrays.asList(downstreams.newOrderResource(),
+                invalid, downstreams.newOrderResource())));
+
+        assertEquals(3, results.size());
+        assertEquals(201, results.get(0).getStatus());
+        assertNotNull(repository.findOne(results.get(0).getOrder().getId()));
+        assertEquals(406, results.get(1).getStatus());
+        assertEquals(500, results.get(2).getStatus());
+        assertEquals("Write concern timed out", results.get(2).getError());
+        assertEquals(1, repository.count());
+    }
+
+    @Test
+    public void exportWritesOneOrderPerLine() throws IOException {
+        saved("5a0000000000000000000001", new Date());
+        saved("5a0000000000000000000002", new Date());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        controller.export(null, null, null, null, response);
+
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals("application/x-ndjson", response.getContentType());
+        List<JsonNode> lines = lines(response.getContentAsByteArray());
+        assertEquals(2, lines.size());
+        assertEquals(StubDownstreams.CUSTOMER_ID, lines.get(0).get("customerId").asText());
+    }
+
+    @Test
+    public void exportFiltersByCustomer() throws IOException {
+        saved("5a0000000000000000000001", new Date());
+        CustomerOrder other = StubDownstreams.customerOrder();
+        other.setCustomerId("someone-else");
+        repository.save(other);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        controller.export("someone-else", null, null, null, response);
+
+        assertEquals(1, lines(response.getContentAsByteArray()).size());
+    }
+
+    @Test
+    public void exportIsGzippedWhenTheClientAcceptsIt() throws IOException {
+        saved("5a0000000000000000000001", new Date());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        controller.export(null, null, null, "deflate, gzip;q=0.5", response);
+
+        assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(1, lines(gunzip(response.getContentAsByteArray())).size());
+    }
+
+    @Test
+    public void exportIsNotGzippedWhenTheClientRefusesIt() throws IOException {
+        saved("5a0000000000000000000001", new Date());
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        controller.export(null, null, null, "gzip;q=0, identity", response);
+
+        assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+        assertEquals(1, lines(response.getContentAsByteArray()).size());
+    }
+
+    @Test
+    public void acceptEncodingIsReadByCodingAndQuality() {
+        assertTrue(OrdersController.acceptsGzip("gzip"));
+        assertTrue(OrdersController.acceptsGzip("GZIP"));
+        assertTrue(OrdersController.acceptsGzip("x-gzip"));
+        assertTrue(OrdersController.acceptsGzip("br, gzip ; q=0.1"));
+        assertTrue(OrdersController.acceptsGzip("*"));
+        assertFalse(OrdersController.acceptsGzip(null));
+        assertFalse(OrdersController.acceptsGzip("identity"));
+        assertFalse(OrdersController.acceptsGzip("gzip;q=0"));
+        assertFalse(OrdersController.acceptsGzip("gzip;q=0.000"));
+        assertFalse(OrdersController.acceptsGzip("x-gzip-foo"));
+        assertFalse(OrdersController.acceptsGzip("gzip;q=0, *"));
+        assertFalse(OrdersController.acceptsGzip("*;q=0"));
+        assertFalse(OrdersController.acceptsGzip("gzip;q=bad"));
+    }
+
+    private String saved(String id, Date date) {
+        CustomerOrder order = StubDownstreams.customerOrder();
+        order.setId(id);
+        order.setDate(date);
+        return repository.save(order).getId();
+    }
+
+    private static String cursor(String value) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T await(DeferredResult<T> result) throws Exception {
+        CompletableFuture<Object> done = new CompletableFuture<>();
+        result.setResultHandler(done::complete);
+        Object value = done.get(5, TimeUnit.SECONDS);
+        if (value instanceof Throwable) {
+            throw new IllegalStateException((Throwable) value);
+        }
+        return (T) value;
+    }
+
+    private static List<JsonNode> lines(byte[] body) throws IOException {
+        ObjectMapper mapper = new ObjectMapper();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(body),
+                StandardCharsets.UTF_8))) {
+            List<JsonNode> lines = new ArrayList<>();
+            for (String line : reader.lines().collect(Collectors.toList())) {
+                lines.add(mapper.readTree(line));
+            }
+            return lines;
+        }
+    }
+
+    private static byte[] gunzip(byte[] body) throws IOException {
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package works.weave.socks.orders.loadtest;
+
+import de.flapdoodle.embed.mongo.MongodExecutable;
+import de.flapdoodle.embed.mongo.MongodStarter;
+import de.flapdoodle.embed.mongo.config.MongodConfigBuilder;
+import de.flapdoodle.embed.mongo.config.Net;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.process.runtime.Network;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.util.EntityUtils;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import works.weave.socks.orders.OrderApplication;
+import works.weave.socks.orders.config.Downstream;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Runs the orders service against embedded Mongo and stub downstream services, drives it at a fixed request rate and
+ * writes an HdrHistogram percentile report per scenario, plus the service's own metrics at the end of the run.
+ * <pre>
+ * mvn -P loadtest test-compile exec:java -Dloadtest.rate=200 -Dloadtest.payment=20,200,0.01
+ * </pre>
+ * Settings, as system properties:
+ * <ul>
+ * <li>{@code loadtest.rate}: requests per second across all scenarios (100)</li>
+ * <li>{@code loadtest.warmup}, {@code loadtest.duration}: seconds to warm up and then to measure (10, 60)</li>
+ * <li>{@code loadtest.mix}: scenario weights, out of {@code create}, {@code history} and {@code customerId}
+ * (create=2,history=1,customerId=1)</li>
+ * <li>{@code loadtest.customers}: how many customers to spread orders across (1000)</li>
+ * <li>{@code loadtest.workers}: concurrent requests the driver can have outstanding (256)</li>
+ * <li>{@code loadtest.user}, {@code loadtest.cart}, {@code loadtest.payment}, {@code loadtest.shipping}: stub
+ * latency and errors as {@code medianMillis,p99Millis,errorRate}</li>
+ * <li>{@code loadtest.output}: directory for the reports (target/loadtest)</li>
+ * </ul>
+ * Any other system property reaches the service as usual, e.g. {@code -Dorders.write-behind.enabled=true
+ * -Dorders.write-behind.directory=target/loadtest/journal}.
+ */
+public class LoadTest {
+    private static final String ADDRESS = "http://user/addresses/57a98d98e4b00679b4a830ad";
+    private static final String CARD = "http://user/cards/57a98d98e4b00679b4a830ae";
+
+    public static void main(String[] args) throws Exception {
+        double rate = Double.parseDouble(System.getProperty("loadtest.rate", "100"));
+        long warmup = Long.getLong("loadtest.warmup", 10);
+        long duration = Long.getLong("loadtest.duration", 60);
+        int customers = Integer.getInteger("loadtest.customers", 1000);
+        int workers = Integer.getInteger("loadtest.workers", 256);
+        String mix = System.getProperty("loadtest.mix", "create=2,history=1,customerId=1");
+        File output = new File(System.getProperty("loadtest.output", "target/loadtest"));
+
+        Map<Downstream, StubServices.Profile> profiles = new EnumMap<>(Downstream.class);
+        profiles.put(Downstream.USER, profile(Downstream.USER, "5,25,0"));
+        profiles.put(Downstream.CART, profile(Downstream.CART, "5,25,0"));
+        profiles.put(Downstream.PAYMENT, profile(Downstream.PAYMENT, "10,60,0"));
+        profiles.put(Downstream.SHIPPING, profile(Downstream.SHIPPING, "10,60,0"));
+
+        int mongoPort = Network.getFreeServerPort();
+        MongodExecutable mongo = MongodStarter.getDefaultInstance().prepare(new MongodConfigBuilder()
+                .version(Version.Main.PRODUCTION)
+                .net(new Net("localhost", mongoPort, Network.localhostIsIPv6()))
+                .build());
+        StubServices stubs = null;
+        ConfigurableApplicationContext service = null;
+        try (CloseableHttpClient client = HttpClients.custom()
+                .setMaxConnTotal(workers)
+                .setMaxConnPerRoute(workers)
+                .build()) {
+            mongo.start();
+            stubs = StubServices.start(profiles);
+            // Command-line arguments, so that they take precedence over application.properties
+            service = new SpringApplicationBuilder(OrderApplication.class).run(
+                    "--server.port=0",
+                    "--spring.data.mongodb.uri=mongodb://localhost:" + mongoPort + "/data",
+                    "--proxy.host=localhost",
+                    "--proxy.port=" + stubs.port());
+            String base = "http://localhost:" + service.getEnvironment().getProperty("local.server.port");
+
+            OpenLoopDriver driver = new OpenLoopDriver(rate, workers);
+            for (String entry : mix.split(",")) {
+                String[] scenario = entry.split("=");
+                int weight = Integer.parseInt(scenario[1].trim());
+                switch (scenario[0].trim()) {
+                    case "create":
+                        driver.add("create", weight, () -> send(client, newOrder(base, customer(customers))));
+                        break;
+                    case "history":
+                        driver.add("history", weight, () -> send(client, new HttpGet(base +
+                                "/orders/search/history?custId=" + customer(customers))));
+                        break;
+                    case "customerId":
+                        driver.add("customerId", weight, () -> send(client, new HttpGet(base +
+                                "/orders/search/customerId?custId=" + customer(customers))));
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown scenario " + scenario[0]);
+                }
+            }
+
+            System.out.printf("Driving %s at %.0f requests/s for %ds after %ds of warm-up%n", base, rate, duration,
+                    warmup);
+            profiles.forEach((downstream, profile) -> System.out.println("  " + downstream + ": " + profile));
+            Map<String, OpenLoopDriver.Result> results = driver.run(warmup, duration);
+            report(results, output);
+            scrapeMetrics(client, base, output);
+        } finally {
+            if (service != null) {
+                service.close();
+            }
+            if (stubs != null) {
+                stubs.stop();
+            }
+            mongo.stop();
+        }
+    }
+
+    private static StubServices.Profile profile(Downstream downstream, String defaults) {
+        return StubServices.Profile.parse(System.getProperty("loadtest." + downstream.getName(), defaults));
+    }
+
+    private static String customer(int customers) {
+        return String.format("%024x", ThreadLocalRandom.current().nextInt(customers));
+    }
+
+    private static HttpPost newOrder(String base, String customer) {
+        HttpPost post = new HttpPost(base + "/orders");
+        post.setEntity(new StringEntity("{\"customer\":\"http://user/customers/" + customer + "\",\"address\":\"" +
+                ADDRESS + "\",\"card\":\"" + CARD + "\",\"items\":\"http://cart/carts/" + customer + "/items\"}",
+                ContentType.APPLICATION_JSON));
+        return post;
+    }
+
+    private static int send(CloseableHttpClient client, HttpUriRequest request) throws IOException {
+        try (CloseableHttpResponse response = client.execute(request)) {
+            EntityUtils.consume(response.getEntity());
+            return response.getStatusLine().getStatusCode();
+        }
+    }
+
+    private static void report(Map<String, OpenLoopDriver.Result> results, File output) throws IOException {
+        Files.createDirectories(output.toPath());
+        System.out.printf("%-12s %10s %8s %10s %10s %10s %10s %10s%n", "scenario", "requests", "errors", "req/s",
+                "p50 ms", "p99 ms", "p99.9 ms", "max ms");
+        for (Map.Entry<String, OpenLoopDriver.Result> entry : results.entrySet()) {
+            OpenLoopDriver.Result result = entry.getValue();
+            try (PrintStream out = new PrintStream(new File(output, entry.getKey() + ".hgrm"), "UTF-8")) {
+                // Recorded in microseconds, reported in milliseconds
+                result.latencies.outputPercentileDistribution(out, 1000.0);
+            }
+            long count = result.latencies.getTotalCount();
+            System.out.printf("%-12s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n", entry.getKey(), count,
+                    result.errors, count / result.elapsedSeconds,
+                    result.latencies.getValueAtPercentile(50) / 1000.0,
+                    result.latencies.getValueAtPercentile(99) / 1000.0,
+                    result.latencies.getValueAtPercentile(99.9) / 1000.0,
+                    result.latencies.getMaxValue() / 1000.0);
+        }
+        System.out.println("Percentile distributions written to " + output.getAbsolutePath());
+    }
+
+    private static void scrapeMetrics(CloseableHttpClient client, String base, File output) throws IOException {
+        try (CloseableHttpResponse response = client.execute(new HttpGet(base + "/metrics"))) {
+            Files.write(new File(output, "metrics.txt").toPath(), EntityUtils.toByteArray(response.getEntity()));
+        }
+    }
+}
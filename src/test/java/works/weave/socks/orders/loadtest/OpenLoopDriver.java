@@ -0,0 +1,144 @@
+package works.weave.socks.orders.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Sends requests at a fixed rate regardless of how quickly they are answered, picking a scenario for each by weight.
+ * Latency is measured from when a request was due to be sent rather than from when a worker got round to it, so time
+ * spent queued behind a slow service counts against that service instead of being left out.
+ */
+class OpenLoopDriver {
+    private final Map<String, Scenario> scenarios = new LinkedHashMap<>();
+    private final List<Scenario> weighted = new ArrayList<>();
+    private final double ratePerSecond;
+    private final int workers;
+
+    OpenLoopDriver(double ratePerSecond, int workers) {
+        this.ratePerSecond = ratePerSecond;
+        this.workers = workers;
+    }
+
+    void add(String name, int weight, Request request) {
+        Scenario scenario = new Scenario(name, request);
+        scenarios.put(name, scenario);
+        for (int i = 0; i < weight; i++) {
+            weighted.add(scenario);
+        }
+    }
+
+    /**
+     * Runs for the warm-up and then the measured period, and returns what was measured, by scenario.
+     */
+    Map<String, Result> run(long warmupSeconds, long durationSeconds) throws InterruptedException {
+        if (weighted.isEmpty()) {
+            throw new IllegalStateException("No scenarios to run");
+        }
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("load-");
+        threadFactory.setDaemon(true);
+        ExecutorService pool = Executors.newFixedThreadPool(workers, threadFactory);
+        try {
+            drive(pool, TimeUnit.SECONDS.toNanos(warmupSeconds));
+            scenarios.values().forEach(Scenario::reset);
+            long start = System.nanoTime();
+            drive(pool, TimeUnit.SECONDS.toNanos(durationSeconds));
+            pool.shutdown();
+            pool.awaitTermination(30, TimeUnit.SECONDS);
+            double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+            Map<String, Result> results = new LinkedHashMap<>();
+            for (Scenario scenario : scenarios.values()) {
+                results.put(scenario.name, scenario.result(elapsedSeconds));
+            }
+            return results;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void drive(ExecutorService pool, long durationNanos) {
+        long intervalNanos = (long) (1e9 / ratePerSecond);
+        long start = System.nanoTime();
+        for (long i = 0; ; i++) {
+            long due = start + i * intervalNanos;
+            if (due - start >= durationNanos) {
+                return;
+            }
+            long wait;
+            while ((wait = due - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Scenario scenario = weighted.get(ThreadLocalRandom.current().nextInt(weighted.size()));
+            pool.execute(() -> scenario.send(due));
+        }
+    }
+
+    /**
+     * One request. Returns the HTTP status, or throws if no response came back.
+     */
+    interface Request {
+        int send() throws Exception;
+    }
+
+    private static class Scenario {
+        private final String name;
+        private final Request request;
+        private final Recorder latencies = new Recorder(3);
+        private final AtomicLong errors = new AtomicLong();
+
+        private Scenario(String name, Request request) {
+            this.name = name;
+            this.request = request;
+        }
+
+        private void send(long due) {
+            boolean failed;
+            try {
+                int status = request.send();
+                failed = status >= 400;
+            } catch (Exception e) {
+                failed = true;
+            }
+            latencies.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - due));
+            if (failed) {
+                errors.incrementAndGet();
+            }
+        }
+
+        private void reset() {
+            latencies.reset();
+            errors.set(0);
+        }
+
+        private Result result(double elapsedSeconds) {
+            return new Result(latencies.getIntervalHistogram(), errors.get(), elapsedSeconds);
+        }
+    }
+
+    /**
+     * The latencies of one scenario in microseconds, and how many of its requests failed.
+     */
+    static class Result {
+        final Histogram latencies;
+        final long errors;
+        final double elapsedSeconds;
+
+        private Result(Histogram latencies, long errors, double elapsedSeconds) {
+            this.latencies = latencies;
+            this.errors = errors;
+            this.elapsedSeconds = elapsedSeconds;
+        }
+    }
+}
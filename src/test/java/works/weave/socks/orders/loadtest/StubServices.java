@@ -0,0 +1,187 @@
+package works.weave.socks.orders.loadtest;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.springframework.hateoas.MediaTypes;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import works.weave.socks.orders.benchmarks.StubDownstreams;
+import works.weave.socks.orders.config.Downstream;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The user, cart, payment and shipping services behind one HTTP proxy port. The orders service is pointed at it with
+ * {@code proxy.host} and {@code proxy.port}, so it keeps calling {@code http://user/...} and so on, and each request is
+ * answered by the service its URI belongs to, after a delay drawn from that service's {@link Profile}.
+ * <p>
+ * Delayed responses wait on a timer rather than on a handler thread, so slow stubs do not cap the request rate.
+ */
+class StubServices {
+    private final HttpServer server;
+    private final ExecutorService handlers;
+    private final ScheduledThreadPoolExecutor timer;
+    private final Map<Downstream, Profile> profiles;
+
+    private StubServices(HttpServer server, ExecutorService handlers, ScheduledThreadPoolExecutor timer,
+                         Map<Downstream, Profile> profiles) {
+        this.server = server;
+        this.handlers = handlers;
+        this.timer = timer;
+        this.profiles = profiles;
+    }
+
+    static StubServices start(Map<Downstream, Profile> profiles) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        ExecutorService handlers = Executors.newFixedThreadPool(8, daemonThreads("stub-http-"));
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(2, daemonThreads("stub-delay-"));
+        StubServices stubs = new StubServices(server, handlers, timer, new EnumMap<>(profiles));
+        server.setExecutor(handlers);
+        server.createContext("/", stubs::handle);
+        server.start();
+        return stubs;
+    }
+
+    int port() {
+        return server.getAddress().getPort();
+    }
+
+    void stop() {
+        server.stop(0);
+        timer.shutdownNow();
+        handlers.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try (InputStream request = exchange.getRequestBody()) {
+            byte[] buffer = new byte[4096];
+            while (request.read(buffer) != -1) {
+                // drain the request so the connection can be reused
+            }
+        }
+        URI uri = exchange.getRequestURI();
+        Downstream downstream;
+        try {
+            downstream = Downstream.of(uri);
+        } catch (IllegalArgumentException e) {
+            respond(exchange, 404, "text/plain", "No stub for " + uri);
+            return;
+        }
+        Profile profile = profiles.get(downstream);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long delay = profile.sampleDelayMicros(random);
+        boolean fail = random.nextDouble() < profile.getErrorRate();
+        timer.schedule(() -> {
+            if (fail) {
+                respond(exchange, 503, "text/plain", downstream + " unavailable");
+            } else {
+                respond(exchange, downstream, uri);
+            }
+        }, delay, TimeUnit.MICROSECONDS);
+    }
+
+    private static void respond(HttpExchange exchange, Downstream downstream, URI uri) {
+        String path = uri.getPath();
+        switch (downstream) {
+            case USER:
+                if (path.startsWith("/customers/")) {
+                    // Echo the customer id, so that orders spread across as many customers as the driver uses
+                    String id = path.substring("/customers/".length());
+                    respond(exchange, 200, MediaTypes.HAL_JSON_VALUE, StubDownstreams.CUSTOMER_JSON.replace
+                            (StubDownstreams.CUSTOMER_ID, id));
+                } else if (path.startsWith("/addresses/")) {
+                    respond(exchange, 200, MediaTypes.HAL_JSON_VALUE, StubDownstreams.ADDRESS_JSON);
+                } else {
+                    respond(exchange, 200, MediaTypes.HAL_JSON_VALUE, StubDownstreams.CARD_JSON);
+                }
+                break;
+            case CART:
+                respond(exchange, 200, "application/json", StubDownstreams.ITEMS_JSON);
+                break;
+            case PAYMENT:
+                respond(exchange, 200, "application/json", StubDownstreams.PAYMENT_JSON);
+                break;
+            default:
+                respond(exchange, 201, "application/json", StubDownstreams.SHIPMENT_JSON);
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, String contentType, String body) {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        try {
+            exchange.getResponseHeaders().set("Content-Type", contentType);
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream response = exchange.getResponseBody()) {
+                response.write(bytes);
+            }
+        } catch (IOException e) {
+            // The client gave up on the request; nothing to answer
+            exchange.close();
+        }
+    }
+
+    private static CustomizableThreadFactory daemonThreads(String prefix) {
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory(prefix);
+        threadFactory.setDaemon(true);
+        return threadFactory;
+    }
+
+    /**
+     * How one stub service behaves: a log-normal latency fixed by its median and 99th percentile, and the share of
+     * requests it fails with a 503. Written as {@code median,p99,errorRate} in milliseconds, e.g. {@code 5,40,0.01}.
+     */
+    static class Profile {
+        private static final double Z_99 = 2.326;
+
+        private final double medianMillis;
+        private final double p99Millis;
+        private final double errorRate;
+        private final double mu;
+        private final double sigma;
+
+        Profile(double medianMillis, double p99Millis, double errorRate) {
+            if (medianMillis <= 0 || p99Millis < medianMillis || errorRate < 0 || errorRate > 1) {
+                throw new IllegalArgumentException("Expected 0 < median <= p99 and 0 <= errorRate <= 1, got " +
+                        medianMillis + "," + p99Millis + "," + errorRate);
+            }
+            this.medianMillis = medianMillis;
+            this.p99Millis = p99Millis;
+            this.errorRate = errorRate;
+            this.mu = Math.log(medianMillis);
+            this.sigma = (Math.log(p99Millis) - mu) / Z_99;
+        }
+
+        static Profile parse(String value) {
+            String[] parts = value.split(",");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Expected median,p99,errorRate, got " + value);
+            }
+            return new Profile(Double.parseDouble(parts[0].trim()), Double.parseDouble(parts[1].trim()), Double
+                    .parseDouble(parts[2].trim()));
+        }
+
+        double getErrorRate() {
+            return errorRate;
+        }
+
+        long sampleDelayMicros(ThreadLocalRandom random) {
+            return (long) (Math.exp(mu + sigma * random.nextGaussian()) * 1000);
+        }
+
+        @Override
+        public String toString() {
+            return "median " + medianMillis + "ms, p99 " + p99Millis + "ms, errors " + errorRate;
+        }
+    }
+}
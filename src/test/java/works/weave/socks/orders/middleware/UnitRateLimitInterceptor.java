@@ -0,0 +1,96 @@
+package works.weave.socks.orders.middleware;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import works.weave.socks.orders.config.RateLimitConfigurationProperties;
+import works.weave.socks.orders.services.RateLimiter;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UnitRateLimitInterceptor {
+    private static final String PROXY = "10.0.0.1";
+    private static final String INNER_PROXY = "10.0.0.2";
+
+    private RateLimitInterceptor interceptor;
+
+    @Before
+    public void setUp() {
+        RateLimitConfigurationProperties config = new RateLimitConfigurationProperties();
+        RateLimitConfigurationProperties.Limit limit = new RateLimitConfigurationProperties.Limit();
+        // One request per client for the length of the test
+        limit.getClient().setRatePerSecond(0.001);
+        limit.getClient().setBurst(1);
+        config.getEndpoints().put(RateLimitConfigurationProperties.CREATE, limit);
+        config.setTrustedProxies(Arrays.asList(PROXY, INNER_PROXY));
+        interceptor = new RateLimitInterceptor(new RateLimiter(config), config);
+    }
+
+    @Test
+    public void forwardedAddressesFromAnUntrustedClientAreIgnored() throws Exception {
+        assertTrue(order("192.168.1.10", "1.1.1.1"));
+        assertFalse(order("192.168.1.10", "2.2.2.2"));
+    }
+
+    @Test
+    public void clientsBehindATrustedProxyGetTheirOwnBuckets() throws Exception {
+        assertTrue(order(PROXY, "1.1.1.1"));
+        assertTrue(order(PROXY, "2.2.2.2"));
+        assertFalse(order(PROXY, "1.1.1.1"));
+    }
+
+    @Test
+    public void onlyTheHopAddedByATrustedProxyIsBelieved() throws Exception {
+        assertTrue(order(PROXY, "6.6.6.6, 1.1.1.1"));
+        assertFalse(order(PROXY, "7.7.7.7, 1.1.1.1"));
+    }
+
+    @Test
+    public void trustedProxiesAlongTheChainAreSkipped() throws Exception {
+        assertTrue(order(PROXY, "1.1.1.1, " + INNER_PROXY));
+        assertFalse(order(PROXY, "1.1.1.1"));
+    }
+
+    @Test
+    public void aTrustedProxyWithoutForwardedAddressesIsTheClient() throws Exception {
+        assertTrue(order(PROXY, null));
+        assertFalse(order(PROXY, INNER_PROXY));
+    }
+
+    @Test
+    public void ordersWithAnIdempotencyKeyAreAlsoHeldToTheLookupLimit() throws Exception {
+        RateLimitConfigurationProperties config = new RateLimitConfigurationProperties();
+        config.getLimit(RateLimitConfigurationProperties.IDEMPOTENCY).getClient().setRatePerSecond(0.001);
+        config.getLimit(RateLimitConfigurationProperties.IDEMPOTENCY).getClient().setBurst(1);
+        interceptor = new RateLimitInterceptor(new RateLimiter(config), config);
+
+        assertTrue(order("192.168.1.10", null, "retry-me"));
+        assertFalse(order("192.168.1.10", null, "retry-me"));
+        assertTrue(order("192.168.1.10", null, null));
+    }
+
+    private boolean order(String remoteAddress, String forwardedFor) throws Exception {
+        return order(remoteAddress, forwardedFor, null);
+    }
+
+    private boolean order(String remoteAddress, String forwardedFor, String idempotencyKey) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/orders");
+        if (idempotencyKey != null) {
+            request.addHeader("Idempotency-Key", idempotencyKey);
+        }
+        request.setRemoteAddr(remoteAddress);
+        if (forwardedFor != null) {
+            request.addHeader("X-Forwarded-For", forwardedFor);
+        }
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        boolean allowed = interceptor.preHandle(request, response, null);
+        assertEquals(allowed, response.getStatus() != HttpStatus.TOO_MANY_REQUESTS.value());
+        return allowed;
+    }
+}
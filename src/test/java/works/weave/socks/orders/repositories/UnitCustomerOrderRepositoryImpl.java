@@ -0,0 +1,84 @@
+package works.weave.socks.orders.repositories;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import works.weave.socks.orders.entities.CustomerOrder;
+import works.weave.socks.orders.projections.OrderSummary;
+
+import java.util.Date;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class UnitCustomerOrderRepositoryImpl {
+    private static final String ORDER_ID = "5a0000000000000000000001";
+
+    private final MongoOperations mongoOperations = mock(MongoOperations.class);
+    private final CustomerOrderRepositoryImpl repository = new CustomerOrderRepositoryImpl(mongoOperations);
+
+    @Test
+    public void theFirstPageIsTheNewestOrdersOfTheCustomer() {
+        repository.findPageByCustomerId("customer", null, null, 20);
+
+        Query query = query();
+        assertEquals(new BasicDBObject("customerId", "customer"), query.getQueryObject());
+        assertEquals(new BasicDBObject("date", -1).append("id", -1), query.getSortObject());
+        assertEquals(20, query.getLimit());
+    }
+
+    @Test
+    public void aLaterPageBreaksTiesOnTheDateByTheId() {
+        Date date = new Date(1000000);
+
+        repository.findPageByCustomerId("customer", date, ORDER_ID, 20);
+
+        DBObject criteria = query().getQueryObject();
+        assertEquals("customer", criteria.get("customerId"));
+        @SuppressWarnings("unchecked")
+        List<DBObject> or = (List<DBObject>) criteria.get("$or");
+        assertEquals(2, or.size());
+        assertEquals(new BasicDBObject("date", new BasicDBObject("$lt", date)), or.get(0));
+        assertEquals(date, or.get(1).get("date"));
+        assertEquals(new BasicDBObject("$lt", new ObjectId(ORDER_ID)), idCriterion(or.get(1)));
+    }
+
+    @Test
+    public void anIdThatIsNotAnObjectIdIsComparedAsItIs() {
+        repository.findPageByCustomerId("customer", new Date(), "legacy-id", 20);
+
+        @SuppressWarnings("unchecked")
+        List<DBObject> or = (List<DBObject>) query().getQueryObject().get("$or");
+        assertEquals(new BasicDBObject("$lt", "legacy-id"), idCriterion(or.get(1)));
+    }
+
+    @Test
+    public void summariesReadOnlyTheSummaryFields() {
+        repository.findPageByCustomerId("customer", null, null, 20);
+
+        DBObject fields = query().getFieldsObject();
+        assertEquals(BasicDBObject.parse(OrderSummary.FIELDS), fields);
+        assertFalse(fields.containsField("items"));
+    }
+
+    private Query query() {
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        verify(mongoOperations).find(query.capture(), eq(CustomerOrder.class));
+        return query.getValue();
+    }
+
+    /**
+     * The id property is mapped to _id only when the query is run, so the criterion may carry either name here.
+     */
+    private static Object idCriterion(DBObject criteria) {
+        return criteria.containsField("_id") ? criteria.get("_id") : criteria.get("id");
+    }
+}
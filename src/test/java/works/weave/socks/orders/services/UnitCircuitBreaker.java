@@ -0,0 +1,165 @@
+package works.weave.socks.orders.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import works.weave.socks.orders.config.CircuitBreakerConfigurationProperties;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UnitCircuitBreaker {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final CircuitBreakerConfigurationProperties.Breaker config = new CircuitBreakerConfigurationProperties
+            .Breaker();
+
+    @Before
+    public void configure() {
+        config.setWindowSize(4);
+        config.setMinimumCalls(4);
+        config.setFailureRateThreshold(50);
+        config.setSlowCallDurationMillis(100);
+        config.setSlowCallRateThreshold(75);
+        config.setHalfOpenCalls(2);
+    }
+
+    @Test
+    public void staysClosedUntilTheMinimumNumberOfCalls() {
+        CircuitBreaker breaker = breaker();
+
+        failures(breaker, 3);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void opensOnceTheFailureRateReachesTheThreshold() {
+        CircuitBreaker breaker = breaker();
+
+        successes(breaker, 2);
+        failures(breaker, 2);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void opensOnceTheSlowCallRateReachesTheThreshold() {
+        CircuitBreaker breaker = breaker();
+
+        breaker.onSuccess(FAST);
+        breaker.onSuccess(SLOW);
+        breaker.onSuccess(SLOW);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        breaker.onSuccess(SLOW);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+
+    @Test
+    public void onlyTheLastWindowOfCallsCounts() {
+        CircuitBreaker breaker = breaker();
+
+        failures(breaker, 1);
+        successes(breaker, 3);
+        assertEquals(0.25, breaker.getFailureRate(), 0);
+
+        // The first failure slides out of the window as the next one comes in
+        successes(breaker, 1);
+        failures(breaker, 1);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0.25, breaker.getFailureRate(), 0);
+    }
+
+    @Test
+    public void letsOnlyTheConfiguredProbesThroughOnceThePauseIsOver() {
+        config.setOpenSeconds(0);
+        CircuitBreaker breaker = opened();
+
+        assertTrue(breaker.tryAcquire());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    @Test
+    public void closesAfreshWhenEveryProbeSucceeds() {
+        config.setOpenSeconds(0);
+        CircuitBreaker breaker = opened();
+        breaker.tryAcquire();
+        breaker.tryAcquire();
+
+        successes(breaker, 2);
+
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals(0, breaker.getFailureRate(), 0);
+        // The window starts over, so earlier failures cannot reopen it on the next call
+        failures(breaker, 3);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    public void reopensWhenAProbeFailsOrIsSlow() {
+        config.setOpenSeconds(0);
+        CircuitBreaker failing = opened();
+        failing.tryAcquire();
+        failures(failing, 1);
+        assertEquals(CircuitBreaker.State.OPEN, failing.getState());
+
+        CircuitBreaker slow = opened();
+        slow.tryAcquire();
+        slow.onSuccess(SLOW);
+        assertEquals(CircuitBreaker.State.OPEN, slow.getState());
+    }
+
+    @Test
+    public void anIgnoredProbeHandsItsPermitBack() {
+        config.setOpenSeconds(0);
+        config.setHalfOpenCalls(1);
+        CircuitBreaker breaker = opened();
+
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire());
+        breaker.onIgnored();
+        assertTrue(breaker.tryAcquire());
+    }
+
+    @Test
+    public void outcomesArrivingWhileOpenAreDropped() {
+        CircuitBreaker breaker = opened();
+
+        successes(breaker, 10);
+
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquire());
+    }
+
+    private CircuitBreaker breaker() {
+        return new CircuitBreaker("test", config);
+    }
+
+    private CircuitBreaker opened() {
+        CircuitBreaker breaker = breaker();
+        failures(breaker, config.getMinimumCalls());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        return breaker;
+    }
+
+    private static void successes(CircuitBreaker breaker, int count) {
+        for (int i = 0; i < count; i++) {
+            breaker.onSuccess(FAST);
+        }
+    }
+
+    private static void failures(CircuitBreaker breaker, int count) {
+        for (int i = 0; i < count; i++) {
+            breaker.onFailure(FAST);
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package works.weave.socks.orders.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import works.weave.socks.orders.config.ConcurrencyLimitConfigurationProperties;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class UnitConcurrencyLimiter {
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ConcurrencyLimitConfigurationProperties.Limit config = new ConcurrencyLimitConfigurationProperties
+            .Limit();
+
+    @Before
+    public void configure() {
+        config.setInitialLimit(10);
+        config.setMinLimit(2);
+        config.setMaxLimit(100);
+        config.setWindowSize(4);
+        config.setTolerance(2.0);
+        // Take each window's estimate as it is, so the limit after a window is exact
+        config.setSmoothing(1.0);
+        config.setBackoffRatio(0.5);
+    }
+
+    @Test
+    public void requestsBeyondTheLimitAreTurnedAway() {
+        ConcurrencyLimiter limiter = limiter();
+
+        for (int i = 1; i <= 10; i++) {
+            assertEquals(i, limiter.tryAcquire());
+        }
+        assertEquals(0, limiter.tryAcquire());
+
+        limiter.onIgnored();
+        assertEquals(10, limiter.tryAcquire());
+    }
+
+    @Test
+    public void aDroppedRequestBacksTheLimitOff() {
+        ConcurrencyLimiter limiter = limiter();
+
+        drop(limiter);
+        assertEquals(5, admitted(limiter));
+        drop(limiter);
+        assertEquals(2, admitted(limiter));
+    }
+
+    @Test
+    public void theLimitNeverFallsBelowTheMinimum() {
+        ConcurrencyLimiter limiter = limiter();
+
+        for (int i = 0; i < 10; i++) {
+            drop(limiter);
+        }
+
+        assertEquals(2, admitted(limiter));
+    }
+
+    @Test
+    public void aFixedLimitIgnoresOutcomes() {
+        config.setAdaptive(false);
+        ConcurrencyLimiter limiter = limiter();
+
+        drop(limiter);
+        window(limiter, FAST, 10);
+
+        assertEquals(10, admitted(limiter));
+    }
+
+    @Test
+    public void theLimitGrowsWhileLatencyHolds() {
+        ConcurrencyLimiter limiter = limiter();
+
+        // The gradient is 1, so the limit grows by its square root: 10 + 3.16
+        window(limiter, FAST, 10);
+        assertEquals(13, admitted(limiter));
+
+        window(limiter, FAST, 13);
+        assertTrue(admitted(limiter) > 13);
+    }
+
+    @Test
+    public void theLimitShrinksAsLatencyRises() {
+        ConcurrencyLimiter limiter = limiter();
+        window(limiter, FAST, 10);
+        int grown = admitted(limiter);
+
+        // Ten times slower than the long-run average: the gradient bottoms out at a half
+        window(limiter, SLOW, grown);
+        int shrunk = admitted(limiter);
+        window(limiter, SLOW, shrunk);
+
+        assertEquals(10, shrunk);
+        assertEquals(8, admitted(limiter));
+    }
+
+    @Test
+    public void aLimitThatWasNeverApproachedIsLeftAlone() {
+        ConcurrencyLimiter limiter = limiter();
+
+        window(limiter, FAST, 4);
+
+        assertEquals(10, admitted(limiter));
+    }
+
+    @Test
+    public void theLimitNeverGrowsPastTheMaximum() {
+        config.setMaxLimit(12);
+        ConcurrencyLimiter limiter = limiter();
+
+        window(limiter, FAST, 10);
+
+        assertEquals(12, admitted(limiter));
+    }
+
+    private ConcurrencyLimiter limiter() {
+        return new ConcurrencyLimiter("test", config);
+    }
+
+    private static void drop(ConcurrencyLimiter limiter) {
+        limiter.tryAcquire();
+        limiter.onDropped();
+    }
+
+    private void window(ConcurrencyLimiter limiter, long rttNanos, int inFlightAtStart) {
+        for (int i = 0; i < config.getWindowSize(); i++) {
+            limiter.tryAcquire();
+            limiter.onSuccess(rttNanos, inFlightAtStart);
+        }
+    }
+
+    /**
+     * How many requests the limiter admits at once, released again afterwards.
+     */
+    private static int admitted(ConcurrencyLimiter limiter) {
+        int admitted = 0;
+        while (limiter.tryAcquire() > 0) {
+            admitted++;
+        }
+        for (int i = 0; i < admitted; i++) {
+            limiter.onIgnored();
+        }
+        return admitted;
+    }
+}
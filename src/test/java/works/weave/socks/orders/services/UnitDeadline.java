@@ -0,0 +1,146 @@
+package works.weave.socks.orders.services;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UnitDeadline {
+    private final Deadline deadline = Deadline.after(10, TimeUnit.SECONDS);
+
+    @After
+    public void cancel() {
+        deadline.cancel();
+    }
+
+    @Test
+    public void aDeadlineWithTimeLeftPassesItsCheck() {
+        deadline.check();
+
+        assertFalse(deadline.isExpired());
+        assertTrue(deadline.remainingMillis() > 0);
+    }
+
+    @Test
+    public void aDeadlineFailsItsCheckOnceItRunsOut() throws InterruptedException {
+        Deadline brief = Deadline.after(10, TimeUnit.MILLISECONDS);
+        CountDownLatch cancelled = new CountDownLatch(1);
+        brief.onCancel(cancelled::countDown);
+
+        assertTrue(cancelled.await(1, TimeUnit.SECONDS));
+        assertTrue(brief.isExpired());
+        assertEquals(0, brief.remainingMillis());
+        try {
+            brief.check();
+            fail("Expected the check to fail");
+        } catch (DeadlineExceededException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void cancellingRunsTheCancellationsInTheOrderTheyWereRegistered() {
+        List<Integer> ran = new ArrayList<>();
+        deadline.onCancel(() -> ran.add(1));
+        deadline.onCancel(() -> ran.add(2));
+
+        deadline.cancel();
+        deadline.cancel();
+
+        assertEquals(Arrays.asList(1, 2), ran);
+        assertTrue(deadline.isExpired());
+    }
+
+    @Test
+    public void aCancellationRegisteredAfterTheCancelRunsAtOnce() {
+        deadline.cancel();
+        List<Integer> ran = new ArrayList<>();
+
+        deadline.onCancel(() -> ran.add(1));
+
+        assertEquals(Arrays.asList(1), ran);
+    }
+
+    @Test
+    public void aCallRunsWithTheDeadlineAsCurrentAndRestoresThePreviousOne() {
+        Deadline outer = Deadline.after(10, TimeUnit.SECONDS);
+        try {
+            assertNull(Deadline.current());
+
+            Deadline seen = outer.call(() -> {
+                assertSame(outer, Deadline.current());
+                assertSame(deadline, deadline.call(Deadline::current));
+                return Deadline.current();
+            });
+
+            assertSame(outer, seen);
+            assertNull(Deadline.current());
+        } finally {
+            outer.cancel();
+        }
+    }
+
+    @Test
+    public void aCallThatThrowsStillRestoresThePreviousDeadline() {
+        try {
+            deadline.call(() -> {
+                throw new IllegalStateException("Failed");
+            });
+            fail("Expected the call to throw");
+        } catch (IllegalStateException expected) {
+            assertNull(Deadline.current());
+        }
+    }
+
+    @Test
+    public void aCallIsNotRunOnceTheDeadlineHasPassed() {
+        deadline.cancel();
+        List<Integer> ran = new ArrayList<>();
+
+        try {
+            deadline.call(() -> ran.add(1));
+            fail("Expected the call to fail");
+        } catch (DeadlineExceededException expected) {
+            assertTrue(ran.isEmpty());
+        }
+    }
+
+    @Test
+    public void aForkIsCancelledWithItsParent() {
+        Deadline fork = deadline.fork();
+
+        deadline.cancel();
+
+        assertTrue(fork.isExpired());
+    }
+
+    @Test
+    public void aForkCanBeCancelledOnItsOwn() {
+        Deadline fork = deadline.fork();
+        List<Integer> ran = new ArrayList<>();
+        fork.onCancel(() -> ran.add(1));
+
+        fork.cancel();
+
+        assertEquals(Arrays.asList(1), ran);
+        assertFalse(deadline.isExpired());
+    }
+
+    @Test
+    public void aForkSharesItsParentsExpiry() {
+        Deadline fork = deadline.fork();
+
+        assertTrue(Math.abs(deadline.remainingMillis() - fork.remainingMillis()) < 100);
+    }
+}
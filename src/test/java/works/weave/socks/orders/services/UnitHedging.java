@@ -0,0 +1,158 @@
+package works.weave.socks.orders.services;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import works.weave.socks.orders.config.Downstream;
+import works.weave.socks.orders.config.HedgingConfigurationProperties;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UnitHedging {
+    // The hedge delay is first worked out after this many samples
+    private static final int WARM_UP = 64;
+    private static final int DELAY_MILLIS = 20;
+
+    private final HedgingConfigurationProperties config = new HedgingConfigurationProperties();
+    private final List<CompletableFuture<String>> attempts = new CopyOnWriteArrayList<>();
+    private final List<Deadline> forks = new CopyOnWriteArrayList<>();
+    private Hedging hedging;
+    private Deadline deadline;
+
+    @Before
+    public void configure() {
+        config.setEnabled(true);
+        config.setMinSamples(10);
+        config.setMinDelayMillis(DELAY_MILLIS);
+        config.setBudgetPercent(10);
+        deadline = Deadline.after(10, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void shutdown() {
+        if (hedging != null) {
+            hedging.shutdown();
+        }
+        deadline.cancel();
+    }
+
+    @Test
+    public void aDisabledHedgeMakesTheRequestOnceUnderTheCallersDeadline() throws Exception {
+        config.setEnabled(false);
+        hedging = new Hedging(config);
+
+        CompletableFuture<String> result = submit();
+        pause();
+
+        assertEquals(1, attempts.size());
+        assertSame(deadline, forks.get(0));
+        attempts.get(0).complete("first");
+        assertEquals("first", result.get(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void aSlowRequestIsNotHedgedUntilThereAreEnoughSamples() throws Exception {
+        hedging = new Hedging(config);
+
+        submit();
+        pause();
+
+        assertEquals(1, attempts.size());
+    }
+
+    @Test
+    public void aSlowRequestIsHedgedAndTheFirstAnswerWins() throws Exception {
+        hedging = warmedUp();
+
+        CompletableFuture<String> result = submit();
+        awaitAttempts(2);
+        attempts.get(1).complete("hedge");
+
+        assertEquals("hedge", result.get(1, TimeUnit.SECONDS));
+        // The loser is aborted through its own deadline, leaving the caller's alone
+        assertTrue(forks.get(0).isExpired());
+        assertFalse(deadline.isExpired());
+    }
+
+    @Test
+    public void aRequestAnsweredInTimeIsNotHedged() throws Exception {
+        hedging = warmedUp();
+
+        CompletableFuture<String> result = submit();
+        attempts.get(0).complete("first");
+        pause();
+
+        assertEquals("first", result.get(1, TimeUnit.SECONDS));
+        assertEquals(1, attempts.size());
+    }
+
+    @Test
+    public void theRequestFailsOnlyOnceEveryAttemptHas() throws Exception {
+        hedging = warmedUp();
+
+        CompletableFuture<String> result = submit();
+        awaitAttempts(2);
+        attempts.get(0).completeExceptionally(new IllegalStateException("first"));
+        assertFalse(result.isDone());
+        attempts.get(1).completeExceptionally(new IllegalStateException("hedge"));
+
+        try {
+            result.get(1, TimeUnit.SECONDS);
+            fail("Expected the request to fail");
+        } catch (ExecutionException e) {
+            assertEquals("hedge", e.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void noHedgeIsSentWithoutBudget() throws Exception {
+        config.setBudgetPercent(0);
+        hedging = warmedUp();
+
+        submit();
+        pause();
+
+        assertEquals(1, attempts.size());
+    }
+
+    private Hedging warmedUp() {
+        Hedging hedging = new Hedging(config);
+        for (int i = 0; i < WARM_UP; i++) {
+            hedging.submit(Downstream.USER, deadline, fork -> CompletableFuture.completedFuture("warm"));
+        }
+        return hedging;
+    }
+
+    private CompletableFuture<String> submit() {
+        return hedging.submit(Downstream.USER, deadline, fork -> {
+            CompletableFuture<String> attempt = new CompletableFuture<>();
+            forks.add(fork);
+            attempts.add(attempt);
+            return attempt;
+        });
+    }
+
+    private void awaitAttempts(int count) throws InterruptedException {
+        long giveUpAt = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (attempts.size() < count) {
+            if (System.nanoTime() - giveUpAt > 0) {
+                fail("Expected " + count + " attempts, got " + attempts.size());
+            }
+            Thread.sleep(1);
+        }
+    }
+
+    private static void pause() throws InterruptedException {
+        Thread.sleep(DELAY_MILLIS * 5);
+    }
+}
@@ -0,0 +1,176 @@
+package works.weave.socks.orders.services;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.dao.DuplicateKeyException;
+import works.weave.socks.orders.entities.CustomerOrder;
+import works.weave.socks.orders.entities.IdempotencyRecord;
+import works.weave.socks.orders.repositories.IdempotencyRecordRepository;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class UnitIdempotencyKeys {
+    private static final String CUSTOMER = "http://user/customers/1";
+    private static final String OTHER_CUSTOMER = "http://user/customers/2";
+    private static final String KEY = "retry-me";
+    private static final String FINGERPRINT = IdempotencyKeys.fingerprint(CUSTOMER, "address", "card", "items");
+
+    // Shared by every instance, as the Mongo collection is
+    private final Map<String, IdempotencyRecord> stored = new ConcurrentHashMap<>();
+    private final AtomicInteger created = new AtomicInteger();
+    private IdempotencyKeys keys;
+
+    @Before
+    public void setUp() {
+        keys = instance();
+    }
+
+    @Test
+    public void aRetryGetsTheOriginalOrderBack() throws Exception {
+        CustomerOrder order = keys.execute(CUSTOMER, KEY, FINGERPRINT, this::create).get(1, TimeUnit.SECONDS);
+
+        CustomerOrder retried = keys.execute(CUSTOMER, KEY, FINGERPRINT, this::create).get(1, TimeUnit.SECONDS);
+
+        assertSame(order, retried);
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void aRetryAtAnotherInstanceGetsTheRecordedOrder() throws Exception {
+        CustomerOrder order = keys.execute(CUSTOMER, KEY, FINGERPRINT, this::create).get(1, TimeUnit.SECONDS);
+
+        CustomerOrder retried = instance().execute(CUSTOMER, KEY, FINGERPRINT, this::create).get(1, TimeUnit
+                .SECONDS);
+
+        assertEquals(order.getId(), retried.getId());
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void aRetryWhileTheOrderIsInFlightWaitsForIt() throws Exception {
+        CompletableFuture<CustomerOrder> pending = new CompletableFuture<>();
+        CompletableFuture<CustomerOrder> first = keys.execute(CUSTOMER, KEY, FINGERPRINT, () -> {
+            created.incrementAndGet();
+            return pending;
+        });
+        CompletableFuture<CustomerOrder> retried = keys.execute(CUSTOMER, KEY, FINGERPRINT, this::create);
+        assertFalse(retried.isDone());
+
+        CustomerOrder order = order();
+        pending.complete(order);
+
+        assertSame(order, first.get(1, TimeUnit.SECONDS));
+        assertSame(order, retried.get(1, TimeUnit.SECONDS));
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void aRetryAtAnotherInstanceWhileTheOrderIsInFlightIsAConflict() throws Exception {
+        keys.execute(CUSTOMER, KEY, FINGERPRINT, CompletableFuture::new);
+
+        assertFails(IdempotencyConflictException.class, instance().execute(CUSTOMER, KEY, FINGERPRINT,
+                this::create));
+        assertEquals(0, created.get());
+    }
+
+    @Test
+    public void aKeyReusedForADifferentOrderIsRejected() throws Exception {
+        keys.execute(CUSTOMER, KEY, FINGERPRINT, this::create).get(1, TimeUnit.SECONDS);
+        String different = IdempotencyKeys.fingerprint(CUSTOMER, "address", "card", "other items");
+
+        assertFails(IdempotencyKeyReusedException.class, keys.execute(CUSTOMER, KEY, different, this::create));
+        assertFails(IdempotencyKeyReusedException.class, instance().execute(CUSTOMER, KEY, different,
+                this::create));
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void customersDoNotShareKeys() throws Exception {
+        CustomerOrder order = keys.execute(CUSTOMER, KEY, FINGERPRINT, this::create).get(1, TimeUnit.SECONDS);
+        String otherFingerprint = IdempotencyKeys.fingerprint(OTHER_CUSTOMER, "address", "card", "items");
+
+        CustomerOrder other = keys.execute(OTHER_CUSTOMER, KEY, otherFingerprint, this::create).get(1, TimeUnit
+                .SECONDS);
+
+        assertNotSame(order, other);
+        assertEquals(2, created.get());
+        assertEquals(2, stored.size());
+    }
+
+    @Test
+    public void aFailedOrderReleasesTheKey() throws Exception {
+        CompletableFuture<CustomerOrder> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("Payment declined"));
+        assertFails(IllegalStateException.class, keys.execute(CUSTOMER, KEY, FINGERPRINT, () -> failed));
+        assertTrue(stored.isEmpty());
+
+        keys.execute(CUSTOMER, KEY, FINGERPRINT, this::create).get(1, TimeUnit.SECONDS);
+
+        assertEquals(1, created.get());
+    }
+
+    /**
+     * Another instance of the service, with its own memory of recent keys but the same records.
+     */
+    private IdempotencyKeys instance() {
+        IdempotencyRecordRepository records = mock(IdempotencyRecordRepository.class);
+        when(records.insert(any(IdempotencyRecord.class))).thenAnswer(invocation -> {
+            IdempotencyRecord record = (IdempotencyRecord) invocation.getArguments()[0];
+            if (stored.putIfAbsent(record.getId(), record) != null) {
+                throw new DuplicateKeyException(record.getId());
+            }
+            return record;
+        });
+        when(records.save(any(IdempotencyRecord.class))).thenAnswer(invocation -> {
+            IdempotencyRecord record = (IdempotencyRecord) invocation.getArguments()[0];
+            stored.put(record.getId(), record);
+            return record;
+        });
+        when(records.findOne(anyString())).thenAnswer(invocation -> stored.get((String) invocation.getArguments()
+                [0]));
+        doAnswer(invocation -> stored.remove((String) invocation.getArguments()[0])).when(records).delete
+                (anyString());
+        Bulkheads bulkheads = mock(Bulkheads.class);
+        when(bulkheads.defaultExecutor()).thenReturn(Runnable::run);
+        return new IdempotencyKeys(records, bulkheads, 600, 100);
+    }
+
+    private CompletableFuture<CustomerOrder> create() {
+        created.incrementAndGet();
+        return CompletableFuture.completedFuture(order());
+    }
+
+    private static CustomerOrder order() {
+        CustomerOrder order = new CustomerOrder();
+        order.setId(Integer.toString(System.identityHashCode(order)));
+        order.setCustomerId(CUSTOMER);
+        return order;
+    }
+
+    private static void assertFails(Class<? extends Throwable> expected, CompletableFuture<CustomerOrder> order)
+            throws Exception {
+        try {
+            order.get(1, TimeUnit.SECONDS);
+            fail("Expected " + expected.getSimpleName());
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().toString(), expected.isInstance(e.getCause()));
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package works.weave.socks.orders.services;
+
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UnitOrderJournal {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final List<OrderJournal> journals = new ArrayList<>();
+
+    @After
+    public void close() {
+        journals.forEach(OrderJournal::close);
+    }
+
+    @Test
+    public void durableRecordsAreReadInOrder() throws IOException {
+        OrderJournal journal = open(4096);
+
+        append(journal, "one", "two", "three");
+
+        assertEquals(Arrays.asList("one", "two", "three"), payloads(journal.read(10)));
+        assertTrue(journal.read(10).isEmpty());
+    }
+
+    @Test
+    public void readStopsAtMax() throws IOException {
+        OrderJournal journal = open(4096);
+        append(journal, "one", "two", "three");
+
+        assertEquals(Arrays.asList("one", "two"), payloads(journal.read(2)));
+        assertEquals(Arrays.asList("three"), payloads(journal.read(2)));
+    }
+
+    @Test
+    public void recordsAfterTheCheckpointAreReplayedOnReopening() throws IOException {
+        OrderJournal journal = open(4096);
+        append(journal, "one", "two", "three");
+        journal.checkpoint(journal.read(1).get(0));
+        journal.close();
+
+        OrderJournal reopened = open(4096);
+
+        assertEquals(2, reopened.recovered());
+        assertEquals(Arrays.asList("two", "three"), payloads(reopened.read(10)));
+    }
+
+    @Test
+    public void rewindReadsEverythingAfterTheCheckpointAgain() throws IOException {
+        OrderJournal journal = open(4096);
+        append(journal, "one", "two", "three");
+        journal.checkpoint(journal.read(1).get(0));
+        journal.read(10);
+
+        journal.rewind();
+
+        assertEquals(Arrays.asList("two", "three"), payloads(journal.read(10)));
+    }
+
+    @Test
+    public void aTornRecordEndsTheLogAndIsWrittenOver() throws IOException {
+        OrderJournal journal = open(4096);
+        append(journal, "one", "two", "three");
+        journal.close();
+        // Each record is an 8 byte header and its payload: the third starts at 22
+        corrupt(segment(0), 22 + 8);
+
+        OrderJournal reopened = open(4096);
+        assertEquals(2, reopened.recovered());
+        append(reopened, "four");
+        reopened.close();
+
+        OrderJournal again = open(4096);
+        assertEquals(3, again.recovered());
+        assertEquals(Arrays.asList("one", "two", "four"), payloads(again.read(10)));
+    }
+
+    @Test
+    public void aRecordCutShortEndsTheLog() throws IOException {
+        OrderJournal journal = open(4096);
+        append(journal, "one", "two");
+        journal.close();
+        // A length running past the end of the segment, as if the header made it to disk and the payload did not
+        overwrite(segment(0), 11, ByteBuffer.allocate(4).putInt(1 << 20).array());
+
+        OrderJournal reopened = open(4096);
+
+        assertEquals(1, reopened.recovered());
+        assertEquals(Arrays.asList("one"), payloads(reopened.read(10)));
+    }
+
+    @Test
+    public void recordsRollOverIntoNewSegmentsAndCheckpointingDeletesTheOldOnes() throws IOException {
+        // Room for one 15 byte record and the end marker per segment
+        OrderJournal journal = open(32);
+        append(journal, "record1", "record2", "record3");
+        List<OrderJournal.Record> records = journal.read(10);
+        assertEquals(Arrays.asList("record1", "record2", "record3"), payloads(records));
+        assertTrue(Files.exists(segment(2)));
+
+        journal.checkpoint(records.get(1));
+
+        assertFalse(Files.exists(segment(0)));
+        assertTrue(Files.exists(segment(1)));
+        journal.close();
+        OrderJournal reopened = open(32);
+        assertEquals(Arrays.asList("record3"), payloads(reopened.read(10)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void aRecordLargerThanASegmentIsRefused() throws IOException {
+        open(32).append(new byte[32]);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void appendingAfterCloseIsRefused() throws IOException {
+        OrderJournal journal = open(4096);
+        journal.close();
+
+        journal.append(bytes("late"));
+    }
+
+    private OrderJournal open(int segmentSize) throws IOException {
+        OrderJournal journal = new OrderJournal(folder.getRoot().toPath(), segmentSize, Runnable::run);
+        journals.add(journal);
+        return journal;
+    }
+
+    private static void append(OrderJournal journal, String... payloads) {
+        Arrays.stream(payloads)
+                .map(payload -> journal.append(bytes(payload)))
+                .collect(Collectors.toList())
+                .forEach(written -> written.join());
+    }
+
+    private static List<String> payloads(List<OrderJournal.Record> records) {
+        return records.stream()
+                .map(record -> new String(record.getPayload(), StandardCharsets.UTF_8))
+                .collect(Collectors.toList());
+    }
+
+    private static byte[] bytes(String payload) {
+        return payload.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private Path segment(long index) {
+        return folder.getRoot().toPath().resolve(String.format("segment-%016d", index));
+    }
+
+    private static void corrupt(Path file, int position) throws IOException {
+        ByteBuffer current = ByteBuffer.allocate(1);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.read(current, position);
+        }
+        overwrite(file, position, new byte[]{(byte) ~current.get(0)});
+    }
+
+    private static void overwrite(Path file, int position, byte[] data) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(data), position);
+        }
+    }
+}
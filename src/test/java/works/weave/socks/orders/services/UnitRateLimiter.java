@@ -0,0 +1,146 @@
+package works.weave.socks.orders.services;
+
+import org.junit.Test;
+import works.weave.socks.orders.config.RateLimitConfigurationProperties;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UnitRateLimiter {
+    private static final String CREATE = RateLimitConfigurationProperties.CREATE;
+    private static final String SEARCH = RateLimitConfigurationProperties.SEARCH;
+    private static final long START = TimeUnit.SECONDS.toNanos(1000);
+
+    private final RateLimitConfigurationProperties config = new RateLimitConfigurationProperties();
+
+    @Test
+    public void aNewBucketAllowsAFullBurst() {
+        RateLimiter limiter = limiter(1, 3);
+
+        assertEquals(3, drain(limiter, "customer", START));
+    }
+
+    @Test
+    public void tokensComeBackAtTheConfiguredRate() {
+        RateLimiter limiter = limiter(2, 3);
+        drain(limiter, "customer", START);
+
+        assertFalse(limiter.tryAcquireCustomer(CREATE, "customer", START + millis(499)));
+        assertTrue(limiter.tryAcquireCustomer(CREATE, "customer", START + millis(500)));
+        assertFalse(limiter.tryAcquireCustomer(CREATE, "customer", START + millis(500)));
+        assertEquals(2, drain(limiter, "customer", START + millis(1500)));
+    }
+
+    @Test
+    public void aRateBelowOnePerSecondStillRefills() {
+        RateLimiter limiter = limiter(0.5, 1);
+        drain(limiter, "customer", START);
+
+        assertFalse(limiter.tryAcquireCustomer(CREATE, "customer", START + millis(1999)));
+        assertTrue(limiter.tryAcquireCustomer(CREATE, "customer", START + millis(2000)));
+    }
+
+    @Test
+    public void anIdleBucketRefillsNoFurtherThanItsBurst() {
+        RateLimiter limiter = limiter(10, 3);
+        drain(limiter, "customer", START);
+
+        assertEquals(3, drain(limiter, "customer", START + TimeUnit.HOURS.toNanos(1)));
+    }
+
+    @Test
+    public void eachKeyHasItsOwnBucket() {
+        RateLimiter limiter = limiter(1, 2);
+        drain(limiter, "customer", START);
+
+        assertFalse(limiter.tryAcquireCustomer(CREATE, "customer", START));
+        assertTrue(limiter.tryAcquireCustomer(CREATE, "other", START));
+    }
+
+    @Test
+    public void endpointsAreLimitedSeparately() {
+        RateLimiter limiter = limiter(1, 2);
+        drain(limiter, "customer", START);
+
+        assertTrue(limiter.tryAcquireCustomer(SEARCH, "customer", START));
+    }
+
+    @Test
+    public void clientsAreNotLimitedUnlessARateIsSet() {
+        RateLimiter unlimited = limiter(1, 1);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(unlimited.tryAcquireClient(CREATE, "10.0.0.1", START));
+        }
+
+        RateLimitConfigurationProperties.Bucket client = config.getEndpoints().get(CREATE).getClient();
+        client.setRatePerSecond(1);
+        client.setBurst(5);
+        RateLimiter limited = new RateLimiter(config);
+        assertEquals(5, drainClient(limited, "10.0.0.1", START));
+        assertTrue(limited.tryAcquireCustomer(CREATE, "10.0.0.1", START));
+    }
+
+    @Test
+    public void aDisabledEndpointIsNeverLimited() {
+        RateLimitConfigurationProperties.Limit limit = new RateLimitConfigurationProperties.Limit();
+        limit.setEnabled(false);
+        config.getEndpoints().put(CREATE, limit);
+        RateLimiter limiter = new RateLimiter(config);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquireCustomer(CREATE, "customer", START));
+        }
+    }
+
+    @Test
+    public void requestsWithoutAKeyAreNotLimited() {
+        RateLimiter limiter = limiter(1, 1);
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(limiter.tryAcquireCustomer(CREATE, null, START));
+        }
+    }
+
+    @Test
+    public void searchesAreLimitedPerCustomerByDefault() {
+        RateLimiter limiter = new RateLimiter(config);
+
+        assertEquals(20, drain(limiter, SEARCH, "customer", START));
+        assertEquals(5, drain(limiter, SEARCH, "customer", START + TimeUnit.SECONDS.toNanos(1)));
+    }
+
+    private RateLimiter limiter(double ratePerSecond, int burst) {
+        RateLimitConfigurationProperties.Limit limit = new RateLimitConfigurationProperties.Limit();
+        limit.getCustomer().setRatePerSecond(ratePerSecond);
+        limit.getCustomer().setBurst(burst);
+        config.getEndpoints().put(CREATE, limit);
+        return new RateLimiter(config);
+    }
+
+    private static int drain(RateLimiter limiter, String customerId, long now) {
+        return drain(limiter, CREATE, customerId, now);
+    }
+
+    private static int drain(RateLimiter limiter, String endpoint, String customerId, long now) {
+        int acquired = 0;
+        while (limiter.tryAcquireCustomer(endpoint, customerId, now)) {
+            acquired++;
+        }
+        return acquired;
+    }
+
+    private static int drainClient(RateLimiter limiter, String client, long now) {
+        int acquired = 0;
+        while (limiter.tryAcquireClient(CREATE, client, now)) {
+            acquired++;
+        }
+        return acquired;
+    }
+
+    private static long millis(long millis) {
+        return TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
@@ -0,0 +1,76 @@
+package works.weave.socks.orders.services;
+
+import org.junit.Test;
+import org.springframework.hateoas.Resource;
+import works.weave.socks.orders.config.CacheConfigurationProperties;
+
+import java.net.URI;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class UnitResourceCache {
+    private static final URI CUSTOMER = URI.create("http://user/customers/1");
+    private static final Resource<String> RESOURCE = new Resource<>("customer");
+
+    @Test
+    public void anEntryWithinItsTtlIsFresh() {
+        ResourceCache cache = cache(60, 600);
+        cache.put(CUSTOMER, RESOURCE, null);
+
+        ResourceCache.Entry entry = cache.get(CUSTOMER);
+
+        assertSame(RESOURCE, entry.getResource());
+        assertTrue(entry.isFresh());
+    }
+
+    @Test
+    public void aStaleEntryWithAnETagIsKeptToBeRevalidated() {
+        ResourceCache cache = cache(0, 600);
+        cache.put(CUSTOMER, RESOURCE, "\"v1\"");
+
+        ResourceCache.Entry entry = cache.get(CUSTOMER);
+
+        assertSame(RESOURCE, entry.getResource());
+        assertEquals("\"v1\"", entry.getEtag());
+        assertFalse(entry.isFresh());
+    }
+
+    @Test
+    public void aStaleEntryWithoutAnETagIsEvicted() {
+        ResourceCache cache = cache(0, 600);
+        cache.put(CUSTOMER, RESOURCE, null);
+
+        assertNull(cache.get(CUSTOMER));
+    }
+
+    @Test
+    public void anEntryThatLosesItsETagIsEvictedAtItsTtl() {
+        ResourceCache cache = cache(0, 600);
+        cache.put(CUSTOMER, RESOURCE, "\"v1\"");
+
+        cache.put(CUSTOMER, RESOURCE, null);
+
+        assertNull(cache.get(CUSTOMER));
+    }
+
+    @Test
+    public void onlyTheConfiguredTypesAreCached() {
+        ResourceCache cache = cache(60, 600);
+
+        assertTrue(cache.isCacheable(CUSTOMER));
+        assertFalse(cache.isCacheable(URI.create("http://catalogue/catalogue/1")));
+    }
+
+    private static ResourceCache cache(long ttlSeconds, long revalidateSeconds) {
+        CacheConfigurationProperties config = new CacheConfigurationProperties();
+        CacheConfigurationProperties.Policy policy = new CacheConfigurationProperties.Policy();
+        policy.setTtlSeconds(ttlSeconds);
+        policy.setRevalidateSeconds(revalidateSeconds);
+        config.getResources().put("customers", policy);
+        return new ResourceCache(config);
+    }
+}
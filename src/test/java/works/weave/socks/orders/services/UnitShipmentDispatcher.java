@@ -0,0 +1,189 @@
+package works.weave.socks.orders.services;
+
+import com.mongodb.DBObject;
+import com.mongodb.WriteResult;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import works.weave.socks.orders.config.OrdersConfigurationProperties;
+import works.weave.socks.orders.config.OutboxConfigurationProperties;
+import works.weave.socks.orders.entities.CustomerOrder;
+import works.weave.socks.orders.entities.Shipment;
+import works.weave.socks.orders.entities.ShipmentDispatch;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class UnitShipmentDispatcher {
+    private static final String ORDER_ID = "5a0000000000000000000001";
+    private static final long TOLERANCE_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private final OutboxConfigurationProperties config = new OutboxConfigurationProperties();
+    private final MongoOperations mongoOperations = mock(MongoOperations.class);
+    private final AsyncGetService asyncGetService = mock(AsyncGetService.class);
+    private ShipmentDispatcher dispatcher;
+
+    @Before
+    public void setUp() {
+        config.setEnabled(false);
+        config.setMaxAttempts(3);
+        config.setRetryBackoffMillis(1000);
+        config.setMaxRetryBackoffMillis(10000);
+        dispatcher = new ShipmentDispatcher(config, new OrdersConfigurationProperties(), mongoOperations,
+                asyncGetService);
+    }
+
+    @Test
+    public void dueRequestsAreClaimedUnderALeaseAndCountedAsAnAttempt() {
+        shippingReturns(CompletableFuture.completedFuture(new Shipment(ORDER_ID, "customer")));
+        claimed(1);
+
+        long now = System.currentTimeMillis();
+        dispatcher.dispatch();
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoOperations).updateMulti(query.capture(), update.capture(), eq(CustomerOrder.class));
+        DBObject criteria = query.getValue().getQueryObject();
+        assertEquals(ShipmentDispatch.PENDING, criteria.get("shipmentDispatch.status"));
+        DBObject set = (DBObject) update.getValue().getUpdateObject().get("$set");
+        assertNotNull(set.get("shipmentDispatch.claim"));
+        assertAbout(now + TimeUnit.SECONDS.toMillis(config.getLeaseSeconds()), set.get("shipmentDispatch.nextAttempt"));
+        assertEquals(1, inc(update.getValue()));
+
+        DBObject shipped = set(recorded());
+        assertEquals(ShipmentDispatch.SHIPPED, shipped.get("shipmentDispatch.status"));
+    }
+
+    @Test
+    public void aFailedAttemptIsRetriedAfterABackOff() {
+        shippingReturns(failure(new IllegalStateException("Shipping unavailable")));
+        claimed(2);
+
+        long now = System.currentTimeMillis();
+        dispatcher.dispatch();
+
+        DBObject set = set(recorded());
+        assertFalse(set.containsField("shipmentDispatch.status"));
+        assertAbout(now + 2000, set.get("shipmentDispatch.nextAttempt"));
+        assertEquals("Shipping unavailable", set.get("shipmentDispatch.lastError"));
+    }
+
+    @Test
+    public void theLastAttemptFailsTheRequest() {
+        shippingReturns(failure(new IllegalStateException("Shipping unavailable")));
+        claimed(3);
+
+        dispatcher.dispatch();
+
+        assertEquals(ShipmentDispatch.FAILED, set(recorded()).get("shipmentDispatch.status"));
+    }
+
+    @Test
+    public void aRequestTurnedAwayByTheBreakerKeepsItsAttempts() {
+        shippingReturns(failure(new CircuitBreakerOpenException("Circuit breaker for shipping is open")));
+        claimed(3);
+
+        long now = System.currentTimeMillis();
+        dispatcher.dispatch();
+
+        Update update = recorded();
+        assertFalse(set(update).containsField("shipmentDispatch.status"));
+        assertAbout(now + 4000, set(update).get("shipmentDispatch.nextAttempt"));
+        assertEquals(-1, inc(update));
+    }
+
+    @Test
+    public void theBackOffDoublesUpToTheMaximum() {
+        assertEquals(1000, dispatcher.backoff(1));
+        assertEquals(2000, dispatcher.backoff(2));
+        assertEquals(8000, dispatcher.backoff(4));
+        assertEquals(10000, dispatcher.backoff(5));
+        assertEquals(10000, dispatcher.backoff(100));
+    }
+
+    @Test
+    public void failedRequestsCanBeRedriven() {
+        when(mongoOperations.updateMulti(any(Query.class), any(Update.class), eq(CustomerOrder.class))).thenReturn(
+                new WriteResult(2, true, null));
+
+        long now = System.currentTimeMillis();
+        assertEquals(2, dispatcher.redriveFailed(null));
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoOperations).updateMulti(query.capture(), update.capture(), eq(CustomerOrder.class));
+        assertEquals(ShipmentDispatch.FAILED, query.getValue().getQueryObject().get("shipmentDispatch.status"));
+        DBObject set = set(update.getValue());
+        assertEquals(ShipmentDispatch.PENDING, set.get("shipmentDispatch.status"));
+        assertEquals(0, set.get("shipmentDispatch.attempts"));
+        assertAbout(now, set.get("shipmentDispatch.nextAttempt"));
+    }
+
+    /**
+     * Sets the outbox up to hand out a single due request, which has made the given number of attempts once claimed.
+     */
+    private void claimed(int attempts) {
+        CustomerOrder due = new CustomerOrder();
+        due.setId(ORDER_ID);
+        CustomerOrder claimed = new CustomerOrder();
+        claimed.setId(ORDER_ID);
+        claimed.setCustomerId("customer");
+        claimed.setDate(new Date());
+        claimed.setShipmentDispatch(new ShipmentDispatch());
+        claimed.getShipmentDispatch().setClaim("claim");
+        claimed.getShipmentDispatch().setAttempts(attempts);
+        when(mongoOperations.find(any(Query.class), eq(CustomerOrder.class))).thenReturn(Collections.singletonList
+                (due), Collections.singletonList(claimed), Collections.emptyList());
+    }
+
+    private void shippingReturns(CompletableFuture<Shipment> shipment) {
+        doReturn(shipment).when(asyncGetService).postResource(any(), any(), any(), any());
+    }
+
+    /**
+     * The update recorded on the claimed order once its attempt is over.
+     */
+    private Update recorded() {
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoOperations).updateFirst(any(Query.class), update.capture(), eq(CustomerOrder.class));
+        return update.getValue();
+    }
+
+    private static CompletableFuture<Shipment> failure(Throwable e) {
+        CompletableFuture<Shipment> failed = new CompletableFuture<>();
+        failed.completeExceptionally(e);
+        return failed;
+    }
+
+    private static DBObject set(Update update) {
+        return (DBObject) update.getUpdateObject().get("$set");
+    }
+
+    private static int inc(Update update) {
+        return ((Number) ((DBObject) update.getUpdateObject().get("$inc")).get("shipmentDispatch.attempts"))
+                .intValue();
+    }
+
+    private static void assertAbout(long expectedMillis, Object date) {
+        long actual = ((Date) date).getTime();
+        assertTrue("Expected about " + new Date(expectedMillis) + ", was " + date, Math.abs(actual - expectedMillis)
+                < TOLERANCE_MILLIS);
+    }
+}
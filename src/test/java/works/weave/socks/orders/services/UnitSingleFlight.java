@@ -0,0 +1,138 @@
+package works.weave.socks.orders.services;
+
+import org.junit.After;
+import org.junit.Test;
+import works.weave.socks.orders.config.Downstream;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class UnitSingleFlight {
+    private final SingleFlight<String> flights = new SingleFlight<>();
+    private final List<Deadline> deadlines = new ArrayList<>();
+    private final AtomicInteger calls = new AtomicInteger();
+    private final List<CompletableFuture<String>> started = new ArrayList<>();
+    private final List<Deadline> shared = new ArrayList<>();
+
+    @After
+    public void cancelDeadlines() {
+        deadlines.forEach(Deadline::cancel);
+    }
+
+    @Test
+    public void callersOfTheSameKeyShareOneCall() {
+        CompletableFuture<String> first = submit("a", deadline());
+        CompletableFuture<String> second = submit("a", deadline());
+
+        assertEquals(1, calls.get());
+        started.get(0).complete("value");
+        assertEquals("value", first.join());
+        assertEquals("value", second.join());
+    }
+
+    @Test
+    public void differentKeysAndLaterCallsGoOutSeparately() {
+        submit("a", deadline());
+        submit("b", deadline());
+        assertEquals(2, calls.get());
+
+        started.get(0).complete("done");
+        submit("a", deadline());
+        assertEquals(3, calls.get());
+    }
+
+    @Test
+    public void aFailedCallFailsEveryCaller() {
+        CompletableFuture<String> first = submit("a", deadline());
+        CompletableFuture<String> second = submit("a", deadline());
+
+        started.get(0).completeExceptionally(new IllegalStateException("down"));
+        assertFailedWith(first, IllegalStateException.class);
+        assertFailedWith(second, IllegalStateException.class);
+    }
+
+    @Test
+    public void aCallThatThrowsFailsTheFutureAndFreesTheKey() {
+        CompletableFuture<String> thrown = flights.submit("a", Downstream.USER, deadline(), deadline -> {
+            throw new IllegalStateException("refused");
+        });
+
+        assertFailedWith(thrown, IllegalStateException.class);
+        submit("a", deadline());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void oneCallerGivingUpLeavesTheCallToTheOthers() {
+        Deadline leaving = deadline();
+        CompletableFuture<String> left = submit("a", leaving);
+        CompletableFuture<String> staying = submit("a", deadline());
+
+        leaving.cancel();
+        assertFalse(shared.get(0).isExpired());
+        started.get(0).complete("value");
+        assertEquals("value", staying.join());
+        assertEquals("value", left.join());
+    }
+
+    @Test
+    public void theCallIsAbortedOnceEveryCallerHasGivenUp() {
+        Deadline first = deadline();
+        Deadline second = deadline();
+        submit("a", first);
+        submit("a", second);
+
+        first.cancel();
+        second.cancel();
+        assertTrue(shared.get(0).isExpired());
+
+        // The abandoned flight is not joined; a new caller starts a call of its own
+        submit("a", deadline());
+        assertEquals(2, calls.get());
+    }
+
+    @Test
+    public void anExpiredCallerGetsAFailedFutureRatherThanAnException() {
+        Deadline expired = deadline();
+        expired.cancel();
+
+        CompletableFuture<String> result = submit("a", expired);
+
+        assertFailedWith(result, DeadlineExceededException.class);
+        assertEquals(0, calls.get());
+    }
+
+    private CompletableFuture<String> submit(String key, Deadline deadline) {
+        return flights.submit(key, Downstream.USER, deadline, flightDeadline -> {
+            calls.incrementAndGet();
+            CompletableFuture<String> call = new CompletableFuture<>();
+            started.add(call);
+            shared.add(flightDeadline);
+            return call;
+        });
+    }
+
+    private Deadline deadline() {
+        Deadline deadline = Deadline.after(10, TimeUnit.SECONDS);
+        deadlines.add(deadline);
+        return deadline;
+    }
+
+    private static void assertFailedWith(CompletableFuture<?> future, Class<? extends Throwable> type) {
+        try {
+            future.join();
+            fail("Expected " + type.getSimpleName());
+        } catch (CompletionException e) {
+            assertTrue(e.getCause().toString(), type.isInstance(e.getCause()));
+        }
+    }
+}